@@ -1,22 +1,37 @@
 package de.r_schuster.compass2therion;
 
+import de.r_schuster.compass2therion.analysis.BacksightCheck;
+import de.r_schuster.compass2therion.analysis.BacksightDisagreement;
 import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.networking.ConnectivityAnalysis;
 import de.r_schuster.compass2therion.networking.FlatNetworking;
+import de.r_schuster.compass2therion.networking.IndexedNetworking;
+import de.r_schuster.compass2therion.networking.MinimalNetworking;
+import de.r_schuster.compass2therion.networking.NetworkComponent;
 import de.r_schuster.compass2therion.networking.Networking;
+import de.r_schuster.compass2therion.networking.ParallelNetworking;
 import de.r_schuster.compass2therion.parser.CompassParser;
 import de.r_schuster.compass2therion.parser.SurveyParser;
-import de.r_schuster.compass2therion.writer.SurveyWriter;
+import de.r_schuster.compass2therion.writer.ChannelWriter;
+import de.r_schuster.compass2therion.writer.IncrementalWriter;
 import de.r_schuster.compass2therion.writer.TherionWriter;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -45,6 +60,14 @@ public class App {
         String outputfile = null;
         String cavename = null;
         boolean renameSurvey = false;
+        boolean parallel = false;
+        String networkingName = null;
+        boolean checkConnectivity = false;
+        boolean checkBacksights = false;
+        boolean split = false;
+        boolean incremental = false;
+        String backsightTolerance = null;
+        Set<String> surveys = new LinkedHashSet<>();
 
         int len = args.length;
         for (int i = 0; i < len; i++) {
@@ -57,40 +80,173 @@ public class App {
                 cavename = args[i + 1];
             } else if ("--renamesurvey".equalsIgnoreCase(arg)) {
                 renameSurvey = true;
+            } else if ("--parallel".equalsIgnoreCase(arg)) {
+                parallel = true;
+            } else if ("--check-connectivity".equalsIgnoreCase(arg)) {
+                checkConnectivity = true;
+            } else if ("--split".equalsIgnoreCase(arg)) {
+                split = true;
+            } else if ("--incremental".equalsIgnoreCase(arg)) {
+                split = true;
+                incremental = true;
+            } else if ("--check-backsights".equalsIgnoreCase(arg)) {
+                checkBacksights = true;
+            } else if ("--backsight-tolerance".equalsIgnoreCase(arg) && len >= i + 2) {
+                checkBacksights = true;
+                backsightTolerance = args[i + 1];
+            } else if ("--networking".equalsIgnoreCase(arg) && len >= i + 2) {
+                networkingName = args[i + 1];
+            } else if ("--survey".equalsIgnoreCase(arg) && len >= i + 2) {
+                surveys.add(args[i + 1]);
+            } else if ("--surveys-from".equalsIgnoreCase(arg) && len >= i + 2) {
+                for (String name : Files.readAllLines(Paths.get(args[i + 1]), StandardCharsets.UTF_8)) {
+                    if (!name.trim().isEmpty()) {
+                        surveys.add(name.trim());
+                    }
+                }
             }
         }
 
-        if (inputfile == null || outputfile == null || cavename == null) {
+        if (inputfile == null || (outputfile == null && !checkConnectivity) || cavename == null) {
             printMessage();
             return;
         }
 
-        File outfile = new File(outputfile);
-        if (outfile.exists()) {
+        Networking networking;
+        if (networkingName == null) {
+            networking = parallel ? new ParallelNetworking() : new IndexedNetworking();
+        } else if ("flat".equalsIgnoreCase(networkingName)) {
+            networking = new FlatNetworking();
+        } else if ("indexed".equalsIgnoreCase(networkingName)) {
+            networking = new IndexedNetworking();
+        } else if ("parallel".equalsIgnoreCase(networkingName)) {
+            networking = new ParallelNetworking();
+        } else if ("minimal".equalsIgnoreCase(networkingName)) {
+            networking = new MinimalNetworking(parallel);
+        } else {
+            printMessage();
+            return;
+        }
+
+        BacksightCheck backsightCheck = null;
+        if (checkBacksights) {
+            try {
+                double tolerance = backsightTolerance == null ? 2 : Double.parseDouble(backsightTolerance);
+                backsightCheck = new BacksightCheck(tolerance, tolerance);
+            } catch (NumberFormatException e) {
+                printMessage();
+                return;
+            }
+        }
+
+        File outfile = checkConnectivity ? null : new File(outputfile);
+        if (outfile != null && outfile.exists() && !incremental) {
             throw new IOException("File " + outputfile + " already exists!");
         }
 
+        SurveyParser parser = new CompassParser(parallel);
         Cave cave;
-        try (InputStream is = new FileInputStream(inputfile)) {
-            SurveyParser parser = new CompassParser();
-            Networking networking = new FlatNetworking();
-            cave = parser.parse(cavename, is, Charset.forName("Cp1252"), networking);
+        if (surveys.isEmpty()) {
+            cave = parser.parse(cavename, Paths.get(inputfile), Charset.forName("Cp1252"), networking);
+        } else {
+            cave = parser.parse(cavename, Paths.get(inputfile), Charset.forName("Cp1252"), surveys, networking);
+        }
+        for (Survey duplicate : cave.getDuplicateSurveys()) {
+            LOGGER.log(Level.WARNING, "Survey {0} is given more than once, only the first one is used.", duplicate.getName());
+        }
+
+        if (backsightCheck != null) {
+            checkBacksights(cave, backsightCheck);
+        }
+
+        if (checkConnectivity) {
+            checkConnectivity(cave);
+            return;
+        }
+
+        if (incremental) {
+            IncrementalWriter writer = new IncrementalWriter(outfile.toPath(), surveyDirectory(outfile.toPath()));
+            writer.write(StandardCharsets.UTF_8, cave, renameSurvey);
+            LOGGER.log(Level.INFO, "{0,number,#} files written, {1,number,#} unchanged, {2,number,#} deleted.",
+                    new Object[]{writer.getWritten().size(), writer.getUnchanged().size(), writer.getDeleted().size()});
+            return;
         }
 
-        try (Writer wrt = new OutputStreamWriter(new FileOutputStream(outfile), StandardCharsets.UTF_8)) {
-            SurveyWriter writer = new TherionWriter(wrt);
+        if (split) {
+            // the master is created last, a survey file which exists already leaves none behind
+            StringWriter master = new StringWriter();
+            try (TherionWriter writer = new TherionWriter(master)) {
+                writer.writeSplit(StandardCharsets.UTF_8, cave, renameSurvey, surveyDirectory(outfile.toPath()));
+            }
+            try (Writer writer = ChannelWriter.open(outfile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(master.toString());
+            }
+            return;
+        }
+
+        try (TherionWriter writer = new TherionWriter(ChannelWriter.open(outfile.toPath(), StandardCharsets.UTF_8), parallel)) {
             writer.write(StandardCharsets.UTF_8, cave, renameSurvey);
         }
     }
 
+    private static void checkConnectivity(Cave cave) {
+        List<NetworkComponent> components = new ConnectivityAnalysis().analyze(cave);
+        if (components.size() <= 1) {
+            LOGGER.info("All surveys are connected.");
+        } else {
+            LOGGER.log(Level.WARNING, "The surveys form {0,number,#} unconnected networks.", components.size());
+        }
+        for (int i = 0; i < components.size(); i++) {
+            NetworkComponent component = components.get(i);
+            LOGGER.log(Level.INFO, "Network {0,number,#}: {1,number,#} surveys, {2,number,#} stations, {3,number,#} shots, length {4} m: {5}",
+                    new Object[]{i + 1, component.getSurveys().size(), component.getStationCount(),
+                        component.getShotCount(), component.getLength().toPlainString(), String.join(", ", component.getSurveys())});
+        }
+    }
+
+    // cave.th puts its surveys into cave/
+    private static Path surveyDirectory(Path master) {
+        String name = master.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String directory = dot > 0 ? name.substring(0, dot) : name + "_surveys";
+        return master.resolveSibling(directory);
+    }
+
+    private static void checkBacksights(Cave cave, BacksightCheck check) {
+        List<BacksightDisagreement> disagreements = check.check(cave);
+        for (BacksightDisagreement d : disagreements) {
+            LOGGER.log(Level.WARNING, "Survey {0}, Shot {1}-{2}: Backsight is off by {3} degrees in azimut and {4} degrees in inclination.",
+                    new Object[]{d.getSurvey(), d.getFrom(), d.getTo(), degrees(d.getAzimutDifference()), degrees(d.getInclinationDifference())});
+        }
+        if (disagreements.isEmpty()) {
+            LOGGER.info("All backsights agree with their foresights.");
+        } else {
+            LOGGER.log(Level.WARNING, "{0,number,#} backsights do not agree with their foresights.", disagreements.size());
+        }
+    }
+
+    // a difference which could not be computed because a reading is missing
+    private static String degrees(double difference) {
+        return Double.isNaN(difference) ? "-" : String.format(Locale.ROOT, "%.2f", difference);
+    }
+
     private static void printMessage() {
         StringBuilder sb = new StringBuilder("USAGE");
         sb.append(NL);
         sb.append("Application expects the following arguments:").append(NL);
         sb.append("--input [PATH TO INPUT FILE] (required)").append(NL);
-        sb.append("--output [PATH TO OUTPUT FILE] (required)").append(NL);
+        sb.append("--output [PATH TO OUTPUT FILE] (required unless --check-connectivity is given)").append(NL);
         sb.append("--cavename [NAME OF CAVE] (required)").append(NL);
         sb.append("--renamesurvey (optional)").append(NL);
+        sb.append("--parallel (optional, uses all processor cores)").append(NL);
+        sb.append("--split (optional, writes each survey into a file of its own next to the output file, which then holds the equates and inputs them)").append(NL);
+        sb.append("--incremental (optional, like --split but rewrites only the files whose content changed since the last run, the output file may exist)").append(NL);
+        sb.append("--check-connectivity (optional, reports unconnected parts of the survey network instead of writing the output file)").append(NL);
+        sb.append("--check-backsights (optional, reports shots whose backsight does not agree with the foresight)").append(NL);
+        sb.append("--backsight-tolerance [DEGREES] (optional, tolerated difference for --check-backsights, default 2)").append(NL);
+        sb.append("--networking [flat|indexed|parallel|minimal] (optional, how connections between surveys are found, minimal writes the fewest equates)").append(NL);
+        sb.append("--survey [NAME OF SURVEY] (optional, repeatable, converts only the given surveys)").append(NL);
+        sb.append("--surveys-from [PATH TO FILE] (optional, file with one survey name per line)").append(NL);
         sb.append("It is recommended to put the arguments in quotation marks.").append(NL);
         sb.append("Example: ").append(NL);
         sb.append("--input \"c:\\caves\\cave.dat\" --output \"c:\\caves\\cave.th\" --cavename \"Big Cave\" --renamesurvey").append(NL);
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.AzimutUnits;
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.InclinationUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Survey;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares foresight and backsight of all shots of surveys with backsights.
+ * The backsight azimut should differ by half a circle and the backsight
+ * inclination should have the opposite sign. Shots where one of the readings
+ * is missing are not compared.
+ *
+ * The readings of each survey are compared as columns of doubles, in a loop
+ * without calls the compiler can vectorize.
+ *
+ * @author roger
+ */
+public class BacksightCheck {
+
+    private static final double GRADS = 0.9;
+
+    private final double azimutTolerance;
+    private final double inclinationTolerance;
+
+    /**
+     * Tolerates 2 degrees in azimut and inclination.
+     */
+    public BacksightCheck() {
+        this(2, 2);
+    }
+
+    /**
+     * @param azimutTolerance tolerated difference in degrees
+     * @param inclinationTolerance tolerated difference in degrees
+     */
+    public BacksightCheck(double azimutTolerance, double inclinationTolerance) {
+        this.azimutTolerance = azimutTolerance;
+        this.inclinationTolerance = inclinationTolerance;
+    }
+
+    /**
+     * @return the shots whose readings differ by more than the tolerance, in
+     * the order of the surveys and shots of the cave
+     */
+    public List<BacksightDisagreement> check(Cave cave) {
+        return cave.getSurveys().parallelStream()
+                .filter(Survey::isReverse)
+                .flatMap(survey -> check(survey).stream())
+                .collect(Collectors.toList());
+    }
+
+    public List<BacksightDisagreement> check(Survey survey) {
+        List<BacksightDisagreement> disagreements = new ArrayList<>();
+        if (!survey.isReverse()) {
+            return disagreements;
+        }
+        ShotTable table = survey.getShotTable();
+        double[] azimut;
+        double[] reverseAzimut;
+        double[] inclination;
+        double[] reverseInclination;
+        if (table != null) {
+            azimut = table.getDoubles(ShotTable.Column.AZIMUT);
+            reverseAzimut = table.getDoubles(ShotTable.Column.REVERSE_AZIMUT);
+            inclination = table.getDoubles(ShotTable.Column.INCLINATION);
+            reverseInclination = table.getDoubles(ShotTable.Column.REVERSE_INCLINATION);
+        } else {
+            List<Shot> shots = survey.getShots();
+            azimut = new double[shots.size()];
+            reverseAzimut = new double[shots.size()];
+            inclination = new double[shots.size()];
+            reverseInclination = new double[shots.size()];
+            for (int i = 0; i < shots.size(); i++) {
+                Shot shot = shots.get(i);
+                azimut[i] = value(shot.getAzimut());
+                reverseAzimut[i] = value(shot.getReverseAzimut());
+                inclination[i] = value(shot.getInclination());
+                reverseInclination[i] = value(shot.getReverseInclination());
+            }
+        }
+
+        // azimuts in the unit of the survey, reverse inclinations are kept in
+        // degrees by the parser
+        double circle = survey.getAzimutUnit() == AzimutUnits.GRADS ? 400 : 360;
+        double toDegrees = 360 / circle;
+        InclinationUnits inclinationUnit = survey.getInclinationUnit();
+        if (inclinationUnit == InclinationUnits.GRADS || inclinationUnit == InclinationUnits.PERCENT) {
+            for (int i = 0; i < inclination.length; i++) {
+                inclination[i] = inclinationUnit == InclinationUnits.GRADS
+                        ? inclination[i] * GRADS : Math.toDegrees(Math.atan(inclination[i] / 100));
+            }
+        }
+
+        int n = azimut.length;
+        double[] azimutDifference = new double[n];
+        double[] inclinationDifference = new double[n];
+        double half = circle / 2;
+        for (int i = 0; i < n; i++) {
+            // difference to the reversed backsight, folded into -half to half
+            double d = reverseAzimut[i] - azimut[i] - half;
+            d -= circle * Math.floor((d + half) / circle);
+            azimutDifference[i] = Math.abs(d) * toDegrees;
+            inclinationDifference[i] = Math.abs(inclination[i] + reverseInclination[i]);
+        }
+
+        List<Shot> shots = null;
+        for (int i = 0; i < n; i++) {
+            // comparisons with NaN are false, missing readings pass
+            if (azimutDifference[i] > azimutTolerance || inclinationDifference[i] > inclinationTolerance) {
+                if (shots == null) {
+                    shots = survey.getShots();
+                }
+                Shot shot = shots.get(i);
+                disagreements.add(new BacksightDisagreement(survey.getName(), i, shot.getFrom(), shot.getTo(),
+                        azimutDifference[i], inclinationDifference[i]));
+            }
+        }
+        return disagreements;
+    }
+
+    private static double value(BigDecimal value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+/**
+ * A shot whose backsight does not agree with its foresight.
+ *
+ * @author roger
+ */
+public final class BacksightDisagreement {
+
+    private final String survey;
+    private final int shot;
+    private final String from;
+    private final String to;
+    private final double azimutDifference;
+    private final double inclinationDifference;
+
+    BacksightDisagreement(String survey, int shot, String from, String to, double azimutDifference, double inclinationDifference) {
+        this.survey = survey;
+        this.shot = shot;
+        this.from = from;
+        this.to = to;
+        this.azimutDifference = azimutDifference;
+        this.inclinationDifference = inclinationDifference;
+    }
+
+    public String getSurvey() {
+        return survey;
+    }
+
+    /**
+     * @return the index of the shot in the shots of its survey
+     */
+    public int getShot() {
+        return shot;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    /**
+     * @return how far the reversed backsight azimut is off the foresight in
+     * degrees, NaN if one of them is missing
+     */
+    public double getAzimutDifference() {
+        return azimutDifference;
+    }
+
+    /**
+     * @return how far the reversed backsight inclination is off the foresight
+     * in degrees, NaN if one of them is missing
+     */
+    public double getInclinationDifference() {
+        return inclinationDifference;
+    }
+
+    @Override
+    public String toString() {
+        return "BacksightDisagreement{" + "survey=" + survey + ", from=" + from + ", to=" + to + ", azimutDifference=" + azimutDifference + ", inclinationDifference=" + inclinationDifference + '}';
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Stations;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Looks for shots with blunders, like transposed digits or a wrong station
+ * name. A blunder spoils every loop the shot belongs to, so the shots are
+ * ranked by the number of independent loops they are part of whose
+ * misclosure is above the tolerance. Shots outside of loops cannot be
+ * checked.
+ *
+ * A loop is bad if its misclosure exceeds both the absolute tolerance and
+ * the relative tolerance times the length of the loop.
+ *
+ * @author roger
+ */
+public class BlunderDetection {
+
+    private final double relativeTolerance;
+    private final double absoluteTolerance;
+
+    /**
+     * Tolerates 1 % of the loop length, at least 5 cm.
+     */
+    public BlunderDetection() {
+        this(0.01, 0.05);
+    }
+
+    /**
+     * @param relativeTolerance tolerated misclosure relative to the loop
+     * length
+     * @param absoluteTolerance tolerated misclosure in metres
+     */
+    public BlunderDetection(double relativeTolerance, double absoluteTolerance) {
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    public BlunderReport analyze(StationGraph graph) {
+        ShotVectors vectors = ShotVectors.of(graph);
+        StationCoordinates coordinates = new DeadReckoning().compute(graph, vectors, Stations.NONE);
+        List<Loop> loops = Loops.of(graph, vectors, coordinates);
+
+        int edgeCount = graph.getEdgeCount();
+        boolean[] bad = new boolean[loops.size()];
+        AtomicIntegerArray loopCounts = new AtomicIntegerArray(edgeCount);
+        AtomicIntegerArray badCounts = new AtomicIntegerArray(edgeCount);
+        // relative misclosures as bits, which order like the positive doubles
+        AtomicLongArray worst = new AtomicLongArray(edgeCount);
+        IntStream.range(0, loops.size()).parallel().forEach(l -> {
+            Loop loop = loops.get(l);
+            double misclosure = loop.getMisclosure();
+            bad[l] = misclosure > absoluteTolerance && misclosure > relativeTolerance * loop.getLength();
+            long relative = Double.doubleToLongBits(loop.getRelativeMisclosure());
+            for (int i = 0; i < loop.getEdgeCount(); i++) {
+                int e = loop.getEdge(i);
+                loopCounts.incrementAndGet(e);
+                if (bad[l]) {
+                    badCounts.incrementAndGet(e);
+                    worst.accumulateAndGet(e, relative, Math::max);
+                }
+            }
+        });
+
+        Stations stations = graph.getStations();
+        List<SuspectShot> suspects = new ArrayList<>();
+        for (int e = 0; e < edgeCount; e++) {
+            if (badCounts.get(e) > 0) {
+                suspects.add(new SuspectShot(e, graph.getSurvey(e).getName(),
+                        stations.getName(graph.getFrom(e)), stations.getName(graph.getTo(e)),
+                        badCounts.get(e), loopCounts.get(e), Double.longBitsToDouble(worst.get(e))));
+            }
+        }
+        // most bad loops first, then the share of bad loops, then the worst loop
+        suspects.sort(Comparator.comparingInt(SuspectShot::getBadLoops).reversed()
+                .thenComparing(Comparator.comparingDouble((SuspectShot s) -> (double) s.getBadLoops() / s.getLoops()).reversed())
+                .thenComparing(Comparator.comparingDouble(SuspectShot::getWorstRelativeMisclosure).reversed())
+                .thenComparingInt(SuspectShot::getEdge));
+        return new BlunderReport(loops, bad, suspects);
+    }
+}
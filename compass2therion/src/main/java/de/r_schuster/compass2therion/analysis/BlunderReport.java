@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The loops of a cave and the shots suspected of blunders, most suspicious
+ * first.
+ *
+ * @author roger
+ */
+public final class BlunderReport {
+
+    private final List<Loop> loops;
+    private final boolean[] bad;
+    private final int badCount;
+    private final List<SuspectShot> suspects;
+    private final Map<String, List<SuspectShot>> bySurvey = new LinkedHashMap<>();
+
+    BlunderReport(List<Loop> loops, boolean[] bad, List<SuspectShot> suspects) {
+        this.loops = Collections.unmodifiableList(loops);
+        this.bad = bad;
+        int count = 0;
+        for (boolean b : bad) {
+            if (b) {
+                count++;
+            }
+        }
+        this.badCount = count;
+        this.suspects = Collections.unmodifiableList(suspects);
+        for (SuspectShot suspect : suspects) {
+            bySurvey.computeIfAbsent(suspect.getSurvey(), s -> new ArrayList<>()).add(suspect);
+        }
+    }
+
+    /**
+     * @return the independent loops ordered by their closing edge
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    /**
+     * @return true if the misclosure of the loop is above the tolerance
+     */
+    public boolean isBad(int loop) {
+        return bad[loop];
+    }
+
+    public int getBadLoopCount() {
+        return badCount;
+    }
+
+    /**
+     * @return the shots of the loops which do not close, ranked by the
+     * number of such loops they belong to
+     */
+    public List<SuspectShot> getSuspects() {
+        return suspects;
+    }
+
+    /**
+     * @return the suspect shots of the survey in the order of their rank
+     */
+    public List<SuspectShot> getSuspects(String survey) {
+        List<SuspectShot> shots = bySurvey.get(survey);
+        return shots == null ? Collections.emptyList() : Collections.unmodifiableList(shots);
+    }
+
+    /**
+     * @return the surveys with suspect shots, the one with the most
+     * suspicious shot first
+     */
+    public List<String> getSurveys() {
+        return new ArrayList<>(bySurvey.keySet());
+    }
+}
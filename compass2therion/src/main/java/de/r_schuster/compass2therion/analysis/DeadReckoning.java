@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Stations;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Computes station positions by walking the shots from an origin, without
+ * any loop closure. Where loops give a station two positions the first one
+ * reached wins. The connected parts of the graph are walked in parallel.
+ *
+ * @author roger
+ */
+public class DeadReckoning {
+
+    /**
+     * Places the first station of each connected part at 0, 0, 0.
+     */
+    public StationCoordinates compute(StationGraph graph) {
+        return compute(graph, ShotVectors.of(graph), Stations.NONE);
+    }
+
+    /**
+     * @param origin station placed at 0, 0, 0, the other connected parts
+     * start at their first station
+     */
+    public StationCoordinates compute(StationGraph graph, int origin) {
+        return compute(graph, ShotVectors.of(graph), origin);
+    }
+
+    public StationCoordinates compute(StationGraph graph, ShotVectors vectors, int origin) {
+        int count = graph.getStationCount();
+        if (origin != Stations.NONE && (origin < 0 || origin >= count)) {
+            throw new IllegalArgumentException("No station " + origin);
+        }
+
+        // label the connected parts, each by its origin
+        int[] component = new int[count];
+        Arrays.fill(component, -1);
+        int[] origins = new int[count];
+        int components = 0;
+        int[] queue = new int[count];
+        if (origin != Stations.NONE) {
+            components = label(graph, origin, components, component, queue);
+            origins[0] = origin;
+        }
+        for (int s = 0; s < count; s++) {
+            if (component[s] < 0) {
+                origins[components] = s;
+                components = label(graph, s, components, component, queue);
+            }
+        }
+        int[] starts = Arrays.copyOf(origins, components);
+
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] z = new double[count];
+        boolean[] placed = new boolean[count];
+        int[] treeEdges = new int[count];
+        int[] depths = new int[count];
+        Arrays.fill(treeEdges, -1);
+        // the parts have disjoint stations, so they can be walked at the same time
+        IntStream.range(0, components).parallel()
+                .forEach(c -> walk(graph, vectors, starts[c], new double[][]{x, y, z}, placed, treeEdges, depths));
+        return new StationCoordinates(x, y, z, component, starts, treeEdges, depths);
+    }
+
+    private static int label(StationGraph graph, int start, int number, int[] component, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        component[start] = number;
+        while (head < tail) {
+            int s = queue[head++];
+            for (int p = graph.getAdjacencyStart(s); p < graph.getAdjacencyEnd(s); p++) {
+                int n = graph.getNeighbour(p);
+                if (component[n] < 0) {
+                    component[n] = number;
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return number + 1;
+    }
+
+    private static void walk(StationGraph graph, ShotVectors vectors, int start,
+            double[][] xyz, boolean[] placed, int[] treeEdges, int[] depths) {
+        double[] x = xyz[0];
+        double[] y = xyz[1];
+        double[] z = xyz[2];
+        // breadth first, stations of the part are reached once
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        placed[start] = true;
+        while (head < tail) {
+            int s = queue[head++];
+            for (int p = graph.getAdjacencyStart(s); p < graph.getAdjacencyEnd(s); p++) {
+                int n = graph.getNeighbour(p);
+                if (placed[n]) {
+                    continue;
+                }
+                placed[n] = true;
+                int e = graph.getEdge(p);
+                double sign = graph.getFrom(e) == s ? 1 : -1;
+                x[n] = x[s] + sign * vectors.getDx(e);
+                y[n] = y[s] + sign * vectors.getDy(e);
+                z[n] = z[s] + sign * vectors.getDz(e);
+                treeEdges[n] = e;
+                depths[n] = depths[s] + 1;
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, tail * 2);
+                }
+                queue[tail++] = n;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+/**
+ * A loop of the shot network closed by one shot, which is not part of the
+ * spanning tree of the dead reckoning, and the tree path between its
+ * stations. The misclosure is how far the shot misses the position the tree
+ * gives to its to station.
+ *
+ * @author roger
+ */
+public final class Loop {
+
+    private final int closingEdge;
+    private final int[] edges;
+    private final double length;
+    private final double dx;
+    private final double dy;
+    private final double dz;
+
+    Loop(int closingEdge, int[] edges, double length, double dx, double dy, double dz) {
+        this.closingEdge = closingEdge;
+        this.edges = edges;
+        this.length = length;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+    }
+
+    /**
+     * @return the edge which closes the loop
+     */
+    public int getClosingEdge() {
+        return closingEdge;
+    }
+
+    /**
+     * @return the edges of the loop, the closing edge first
+     */
+    public int[] getEdges() {
+        return edges.clone();
+    }
+
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    public int getEdge(int i) {
+        return edges[i];
+    }
+
+    /**
+     * @return the summed length of the shots of the loop in metres
+     */
+    public double getLength() {
+        return length;
+    }
+
+    public double getMisclosureX() {
+        return dx;
+    }
+
+    public double getMisclosureY() {
+        return dy;
+    }
+
+    public double getMisclosureZ() {
+        return dz;
+    }
+
+    /**
+     * @return the length of the misclosure in metres
+     */
+    public double getMisclosure() {
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * @return the misclosure relative to the length of the loop, 0 for a loop
+     * without length
+     */
+    public double getRelativeMisclosure() {
+        return length > 0 ? getMisclosure() / length : 0;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Stations;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Distributes the misclosures of the loops of a shot network by least
+ * squares. Each shot is an observation of the difference between the
+ * positions of its stations, weighted by the inverse of its length. The
+ * normal equations are the weighted Laplacian of the station graph with the
+ * origin of each connected part held fixed. The three axes share the matrix
+ * and are solved independently by conjugate gradients with a Jacobi
+ * preconditioner, starting from the dead reckoning. The matrix is never
+ * stored; it is applied along the adjacency of the graph.
+ *
+ * @author roger
+ */
+public class LoopClosure {
+
+    // shots shorter than this get the weight of a shot of this length
+    private static final double MIN_LENGTH = 0.01;
+
+    private final double tolerance;
+    private final int maxIterations;
+
+    public LoopClosure() {
+        this(1e-10, 10000);
+    }
+
+    /**
+     * @param tolerance the residual relative to the right hand side at which
+     * the solver stops
+     * @param maxIterations the most iterations per axis
+     */
+    public LoopClosure(double tolerance, int maxIterations) {
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    public LoopClosureResult adjust(StationGraph graph) {
+        ShotVectors vectors = ShotVectors.of(graph);
+        StationCoordinates start = new DeadReckoning().compute(graph, vectors, Stations.NONE);
+        List<Loop> loops = Loops.of(graph, vectors, start);
+
+        int count = graph.getStationCount();
+        double[] weights = new double[graph.getEdgeCount()];
+        double[] diagonal = new double[count];
+        for (int e = 0; e < weights.length; e++) {
+            weights[e] = 1 / Math.max(vectors.getLength(e), MIN_LENGTH);
+            if (graph.getFrom(e) != graph.getTo(e)) {
+                diagonal[graph.getFrom(e)] += weights[e];
+                diagonal[graph.getTo(e)] += weights[e];
+            }
+        }
+        boolean[] fixed = new boolean[count];
+        for (int c = 0; c < start.getComponentCount(); c++) {
+            fixed[start.getOrigin(c)] = true;
+        }
+
+        double[][] positions = start.toArrays();
+        int[] iterations = new int[3];
+        boolean[] converged = new boolean[3];
+        IntStream.range(0, 3).parallel().forEach(axis -> {
+            double[] rhs = new double[count];
+            for (int e = 0; e < weights.length; e++) {
+                double v = weights[e] * component(vectors, e, axis);
+                rhs[graph.getTo(e)] += v;
+                rhs[graph.getFrom(e)] -= v;
+            }
+            iterations[axis] = solve(graph, weights, diagonal, fixed, rhs, positions[axis]);
+            converged[axis] = iterations[axis] <= maxIterations;
+        });
+
+        StationCoordinates adjusted = start.withPositions(positions[0], positions[1], positions[2]);
+        int used = Math.min(Math.max(iterations[0], Math.max(iterations[1], iterations[2])), maxIterations);
+        return new LoopClosureResult(start, adjusted, loops, used, converged[0] && converged[1] && converged[2]);
+    }
+
+    private static double component(ShotVectors vectors, int e, int axis) {
+        switch (axis) {
+            case 0:
+                return vectors.getDx(e);
+            case 1:
+                return vectors.getDy(e);
+            default:
+                return vectors.getDz(e);
+        }
+    }
+
+    /**
+     * Preconditioned conjugate gradients, x holds the start and gets the
+     * solution.
+     *
+     * @return the iterations used, more than the maximum if the solver did
+     * not converge
+     */
+    private int solve(StationGraph graph, double[] weights, double[] diagonal, boolean[] fixed, double[] rhs, double[] x) {
+        int n = x.length;
+        double[] r = new double[n];
+        multiply(graph, weights, fixed, x, r);
+        double norm = 0;
+        for (int i = 0; i < n; i++) {
+            r[i] = fixed[i] ? 0 : rhs[i] - r[i];
+            if (!fixed[i]) {
+                norm += rhs[i] * rhs[i];
+            }
+        }
+        double limit = tolerance * tolerance * Math.max(norm, Double.MIN_NORMAL);
+
+        double[] z = new double[n];
+        double[] p = new double[n];
+        double[] q = new double[n];
+        double rz = precondition(diagonal, fixed, r, z);
+        System.arraycopy(z, 0, p, 0, n);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            if (dot(r, r) <= limit) {
+                return iteration;
+            }
+            multiply(graph, weights, fixed, p, q);
+            double alpha = rz / dot(p, q);
+            for (int i = 0; i < n; i++) {
+                x[i] += alpha * p[i];
+                r[i] -= alpha * q[i];
+            }
+            double next = precondition(diagonal, fixed, r, z);
+            double beta = next / rz;
+            rz = next;
+            for (int i = 0; i < n; i++) {
+                p[i] = z[i] + beta * p[i];
+            }
+        }
+        return dot(r, r) <= limit ? maxIterations : maxIterations + 1;
+    }
+
+    // y = L x for the free stations, fixed stations keep their position
+    private static void multiply(StationGraph graph, double[] weights, boolean[] fixed, double[] x, double[] y) {
+        for (int s = 0; s < x.length; s++) {
+            if (fixed[s]) {
+                y[s] = 0;
+                continue;
+            }
+            double sum = 0;
+            for (int p = graph.getAdjacencyStart(s); p < graph.getAdjacencyEnd(s); p++) {
+                int n = graph.getNeighbour(p);
+                if (n != s) {
+                    double w = weights[graph.getEdge(p)];
+                    sum += w * (x[s] - (fixed[n] ? 0 : x[n]));
+                }
+            }
+            y[s] = sum;
+        }
+    }
+
+    private static double precondition(double[] diagonal, boolean[] fixed, double[] r, double[] z) {
+        double rz = 0;
+        for (int i = 0; i < r.length; i++) {
+            z[i] = fixed[i] || diagonal[i] == 0 ? 0 : r[i] / diagonal[i];
+            rz += r[i] * z[i];
+        }
+        return rz;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
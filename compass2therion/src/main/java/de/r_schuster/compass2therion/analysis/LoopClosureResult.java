@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a {@link LoopClosure}: the positions before and after the
+ * adjustment and the misclosures of the loops before it.
+ *
+ * @author roger
+ */
+public final class LoopClosureResult {
+
+    private final StationCoordinates deadReckoning;
+    private final StationCoordinates adjusted;
+    private final List<Loop> loops;
+    private final int iterations;
+    private final boolean converged;
+
+    LoopClosureResult(StationCoordinates deadReckoning, StationCoordinates adjusted, List<Loop> loops, int iterations, boolean converged) {
+        this.deadReckoning = deadReckoning;
+        this.adjusted = adjusted;
+        this.loops = Collections.unmodifiableList(loops);
+        this.iterations = iterations;
+        this.converged = converged;
+    }
+
+    /**
+     * @return the positions without loop closure
+     */
+    public StationCoordinates getDeadReckoning() {
+        return deadReckoning;
+    }
+
+    public StationCoordinates getAdjusted() {
+        return adjusted;
+    }
+
+    /**
+     * @return the independent loops ordered by their closing edge
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    /**
+     * @return the iterations of the solver on the slowest axis
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return false if the solver stopped at its iteration limit
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
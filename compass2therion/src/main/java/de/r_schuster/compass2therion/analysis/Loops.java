@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The independent loops of a shot network, one for each edge outside the
+ * spanning tree of the dead reckoning.
+ *
+ * @author roger
+ */
+final class Loops {
+
+    private Loops() {
+    }
+
+    /**
+     * @return the loops ordered by their closing edge, built in parallel
+     */
+    static List<Loop> of(StationGraph graph, ShotVectors vectors, StationCoordinates coordinates) {
+        return IntStream.range(0, graph.getEdgeCount()).parallel()
+                .filter(e -> !isTreeEdge(graph, coordinates, e))
+                .mapToObj(e -> loop(graph, vectors, coordinates, e))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isTreeEdge(StationGraph graph, StationCoordinates coordinates, int e) {
+        return coordinates.getTreeEdge(graph.getTo(e)) == e || coordinates.getTreeEdge(graph.getFrom(e)) == e;
+    }
+
+    private static Loop loop(StationGraph graph, ShotVectors vectors, StationCoordinates coordinates, int closing) {
+        int from = graph.getFrom(closing);
+        int to = graph.getTo(closing);
+        int[] edges = new int[8];
+        edges[0] = closing;
+        int n = 1;
+        double length = vectors.getLength(closing);
+
+        // up the tree from both stations to their common ancestor
+        int a = from;
+        int b = to;
+        while (a != b) {
+            int step;
+            if (coordinates.getDepth(a) >= coordinates.getDepth(b)) {
+                step = coordinates.getTreeEdge(a);
+                a = other(graph, step, a);
+            } else {
+                step = coordinates.getTreeEdge(b);
+                b = other(graph, step, b);
+            }
+            if (n == edges.length) {
+                edges = Arrays.copyOf(edges, n * 2);
+            }
+            edges[n++] = step;
+            length += vectors.getLength(step);
+        }
+
+        double dx = coordinates.getX(from) + vectors.getDx(closing) - coordinates.getX(to);
+        double dy = coordinates.getY(from) + vectors.getDy(closing) - coordinates.getY(to);
+        double dz = coordinates.getZ(from) + vectors.getDz(closing) - coordinates.getZ(to);
+        return new Loop(closing, Arrays.copyOf(edges, n), length, dx, dy, dz);
+    }
+
+    private static int other(StationGraph graph, int edge, int station) {
+        return graph.getFrom(edge) == station ? graph.getTo(edge) : graph.getFrom(edge);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.AzimutUnits;
+import de.r_schuster.compass2therion.data.InclinationUnits;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Survey;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The displacement of each edge of a {@link StationGraph} in metres, x to
+ * the east, y to the north and z up, from the from station to the to station
+ * of the edge.
+ *
+ * The units, the declination and the backsights are taken from the survey of
+ * each shot. Units which are not given are taken as metres and degrees like
+ * in Therion. Where a survey has backsights and both readings are given, the
+ * foresight and the reversed backsight are averaged; where only one of them
+ * is given, that one is used. A missing azimut or inclination counts as 0,
+ * a missing length as a shot of length 0.
+ *
+ * @author roger
+ */
+public final class ShotVectors {
+
+    private static final double FEET = 0.3048;
+    private static final double GRADS = 0.9;
+
+    private final double[] dx;
+    private final double[] dy;
+    private final double[] dz;
+    private final double[] length;
+
+    private ShotVectors(int edgeCount) {
+        dx = new double[edgeCount];
+        dy = new double[edgeCount];
+        dz = new double[edgeCount];
+        length = new double[edgeCount];
+    }
+
+    /**
+     * Computes the vectors of all edges on all processor cores.
+     */
+    public static ShotVectors of(StationGraph graph) {
+        List<Survey> surveys = graph.getCave().getSurveys();
+        Units[] units = new Units[surveys.size()];
+        for (int i = 0; i < units.length; i++) {
+            units[i] = new Units(surveys.get(i));
+        }
+        ShotVectors vectors = new ShotVectors(graph.getEdgeCount());
+        IntStream.range(0, graph.getEdgeCount()).parallel().forEach(e -> {
+            int index = graph.getSurveyIndex(e);
+            vectors.compute(e, surveys.get(index), units[index], graph.getShotIndex(e));
+        });
+        return vectors;
+    }
+
+    public int getEdgeCount() {
+        return dx.length;
+    }
+
+    public double getDx(int edge) {
+        return dx[edge];
+    }
+
+    public double getDy(int edge) {
+        return dy[edge];
+    }
+
+    public double getDz(int edge) {
+        return dz[edge];
+    }
+
+    /**
+     * @return the length of the shot in metres
+     */
+    public double getLength(int edge) {
+        return length[edge];
+    }
+
+    private void compute(int e, Survey survey, Units units, int row) {
+        ShotTable table = survey.getShotTable();
+        double len;
+        double azimut;
+        double inclination;
+        double reverseAzimut;
+        double reverseInclination;
+        if (table != null) {
+            len = value(table, ShotTable.Column.LENGTH, row);
+            azimut = value(table, ShotTable.Column.AZIMUT, row);
+            inclination = value(table, ShotTable.Column.INCLINATION, row);
+            reverseAzimut = value(table, ShotTable.Column.REVERSE_AZIMUT, row);
+            reverseInclination = value(table, ShotTable.Column.REVERSE_INCLINATION, row);
+        } else {
+            Shot shot = survey.getShots().get(row);
+            len = value(shot.getLength());
+            azimut = value(shot.getAzimut());
+            inclination = value(shot.getInclination());
+            reverseAzimut = value(shot.getReverseAzimut());
+            reverseInclination = value(shot.getReverseInclination());
+        }
+
+        len = Double.isNaN(len) ? 0 : len * units.length;
+        azimut *= units.azimut;
+        inclination = units.inclination(inclination);
+        if (units.reverse) {
+            // the parser keeps reverse inclinations in degrees
+            azimut = average(azimut, reverseAzimut * units.azimut + 180, true);
+            inclination = average(inclination, -reverseInclination, false);
+        }
+        azimut = Double.isNaN(azimut) ? units.declination : azimut + units.declination;
+        inclination = Double.isNaN(inclination) ? 0 : inclination;
+
+        double az = Math.toRadians(azimut);
+        double inc = Math.toRadians(inclination);
+        double horizontal = len * Math.cos(inc);
+        dx[e] = horizontal * Math.sin(az);
+        dy[e] = horizontal * Math.cos(az);
+        dz[e] = len * Math.sin(inc);
+        length[e] = len;
+    }
+
+    // mean of two angles in degrees, NaN for a missing one
+    private static double average(double a, double b, boolean circular) {
+        if (Double.isNaN(a)) {
+            return b;
+        }
+        if (Double.isNaN(b)) {
+            return a;
+        }
+        if (!circular) {
+            return (a + b) / 2;
+        }
+        double ra = Math.toRadians(a);
+        double rb = Math.toRadians(b);
+        return Math.toDegrees(Math.atan2(Math.sin(ra) + Math.sin(rb), Math.cos(ra) + Math.cos(rb)));
+    }
+
+    private static double value(ShotTable table, ShotTable.Column column, int row) {
+        long hundredths;
+        try {
+            hundredths = table.getHundredths(column, row);
+        } catch (ArithmeticException e) {
+            return table.getDecimal(column, row).doubleValue();
+        }
+        if (hundredths == ShotTable.NULL) {
+            return Double.NaN;
+        }
+        return hundredths == ShotTable.PASSAGE ? 0 : hundredths / 100.0;
+    }
+
+    private static double value(BigDecimal value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * Conversions of the readings of a survey to metres and degrees.
+     */
+    private static final class Units {
+
+        private final double length;
+        private final double azimut;
+        private final InclinationUnits inclinationUnit;
+        private final double declination;
+        private final boolean reverse;
+
+        private Units(Survey survey) {
+            LengthUnits lengthUnit = survey.getLengthUnit();
+            length = lengthUnit == null || lengthUnit == LengthUnits.METRES ? 1 : FEET;
+            azimut = survey.getAzimutUnit() == AzimutUnits.GRADS ? GRADS : 1;
+            inclinationUnit = survey.getInclinationUnit();
+            declination = survey.getDeclination() == null ? 0 : survey.getDeclination().doubleValue();
+            reverse = survey.isReverse();
+        }
+
+        private double inclination(double value) {
+            if (inclinationUnit == InclinationUnits.GRADS) {
+                return value * GRADS;
+            }
+            if (inclinationUnit == InclinationUnits.PERCENT) {
+                return Math.toDegrees(Math.atan(value / 100));
+            }
+            return value;
+        }
+    }
+}
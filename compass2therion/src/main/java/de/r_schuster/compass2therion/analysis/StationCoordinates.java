@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+/**
+ * Positions of the stations of a {@link StationGraph} in metres, x to the
+ * east, y to the north and z up. Each connected part of the graph has its own
+ * origin at 0, 0, 0. The edges the origins were walked along form a spanning
+ * tree of each part.
+ *
+ * @author roger
+ */
+public final class StationCoordinates {
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final int[] component;
+    private final int[] origins;
+    // spanning tree of the walk
+    private final int[] treeEdges;
+    private final int[] depths;
+
+    StationCoordinates(double[] x, double[] y, double[] z, int[] component, int[] origins, int[] treeEdges, int[] depths) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.component = component;
+        this.origins = origins;
+        this.treeEdges = treeEdges;
+        this.depths = depths;
+    }
+
+    /**
+     * @return the same stations, components and tree at other positions
+     */
+    StationCoordinates withPositions(double[] x, double[] y, double[] z) {
+        return new StationCoordinates(x, y, z, component, origins, treeEdges, depths);
+    }
+
+    public int getStationCount() {
+        return x.length;
+    }
+
+    public double getX(int station) {
+        return x[station];
+    }
+
+    public double getY(int station) {
+        return y[station];
+    }
+
+    public double getZ(int station) {
+        return z[station];
+    }
+
+    /**
+     * @return the connected part of the graph the station belongs to
+     */
+    public int getComponent(int station) {
+        return component[station];
+    }
+
+    public int getComponentCount() {
+        return origins.length;
+    }
+
+    /**
+     * @return the station at 0, 0, 0 of the component
+     */
+    public int getOrigin(int component) {
+        return origins[component];
+    }
+
+    /**
+     * @return the edge over which the station was reached from the origin of
+     * its component, -1 for the origin
+     */
+    public int getTreeEdge(int station) {
+        return treeEdges[station];
+    }
+
+    /**
+     * @return the number of edges between the station and the origin of its
+     * component along the tree edges
+     */
+    int getDepth(int station) {
+        return depths[station];
+    }
+
+    /**
+     * @return copies of the x, y and z arrays
+     */
+    public double[][] toArrays() {
+        return new double[][]{x.clone(), y.clone(), z.clone()};
+    }
+}
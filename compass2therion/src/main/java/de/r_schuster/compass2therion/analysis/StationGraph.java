@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Stations;
+import de.r_schuster.compass2therion.data.Survey;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The shots of a cave as a graph of its stations, in compressed sparse row
+ * form. Stations are the ids of the station table of the cave, so like in
+ * {@link de.r_schuster.compass2therion.networking.FlatNetworking} all
+ * stations with the same name are one. Each shot between two stations is an
+ * edge, whose id leads back to the survey and the shot. Shots without a to
+ * station are left out.
+ *
+ * The neighbours of a station are the positions
+ * {@link #getAdjacencyStart(int)} to {@link #getAdjacencyEnd(int)} - 1, each
+ * with the neighbouring station and the edge leading there. The graph takes
+ * a fixed number of ints per station and shot.
+ *
+ * The graph is a snapshot; it does not follow later changes of the cave.
+ *
+ * @author roger
+ */
+public final class StationGraph {
+
+    private final Cave cave;
+    private final Stations stations;
+    // by edge
+    private final int[] from;
+    private final int[] to;
+    private final int[] survey;
+    private final int[] shot;
+    // by station, start of its neighbours
+    private final int[] offsets;
+    // by position
+    private final int[] neighbours;
+    private final int[] edges;
+
+    private StationGraph(Cave cave, int[] from, int[] to, int[] survey, int[] shot, int edgeCount) {
+        this.cave = cave;
+        this.stations = cave.getStations();
+        this.from = Arrays.copyOf(from, edgeCount);
+        this.to = Arrays.copyOf(to, edgeCount);
+        this.survey = Arrays.copyOf(survey, edgeCount);
+        this.shot = Arrays.copyOf(shot, edgeCount);
+
+        int stationCount = stations.size();
+        offsets = new int[stationCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[this.from[e] + 1]++;
+            offsets[this.to[e] + 1]++;
+        }
+        for (int s = 0; s < stationCount; s++) {
+            offsets[s + 1] += offsets[s];
+        }
+        neighbours = new int[offsets[stationCount]];
+        edges = new int[neighbours.length];
+        int[] fill = Arrays.copyOf(offsets, stationCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int a = this.from[e];
+            int b = this.to[e];
+            neighbours[fill[a]] = b;
+            edges[fill[a]++] = e;
+            neighbours[fill[b]] = a;
+            edges[fill[b]++] = e;
+        }
+    }
+
+    /**
+     * Builds the graph of all shots of the cave. Stations of shots which are
+     * not in the station table of the cave yet are added to it.
+     */
+    public static StationGraph of(Cave cave) {
+        Stations stations = cave.getStations();
+        List<Survey> surveys = cave.getSurveys();
+        int capacity = 0;
+        for (Survey surv : surveys) {
+            capacity += surv.getShots().size();
+        }
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        int[] survey = new int[capacity];
+        int[] shot = new int[capacity];
+        int e = 0;
+        for (int i = 0; i < surveys.size(); i++) {
+            Survey surv = surveys.get(i);
+            ShotTable table = surv.getShotTable();
+            if (table != null && table.getStations() == stations) {
+                for (int row = 0; row < table.size(); row++) {
+                    int a = table.getFrom(row);
+                    int b = table.getTo(row);
+                    if (a != Stations.NONE && b != Stations.NONE) {
+                        from[e] = a;
+                        to[e] = b;
+                        survey[e] = i;
+                        shot[e++] = row;
+                    }
+                }
+                continue;
+            }
+            List<Shot> shots = surv.getShots();
+            for (int row = 0; row < shots.size(); row++) {
+                Shot s = shots.get(row);
+                int a = s.getStations() == stations ? s.getFromId() : stations.intern(s.getFrom());
+                int b = s.getStations() == stations ? s.getToId() : stations.intern(s.getTo());
+                if (a != Stations.NONE && b != Stations.NONE) {
+                    from[e] = a;
+                    to[e] = b;
+                    survey[e] = i;
+                    shot[e++] = row;
+                }
+            }
+        }
+        return new StationGraph(cave, from, to, survey, shot, e);
+    }
+
+    public Cave getCave() {
+        return cave;
+    }
+
+    /**
+     * @return the table of the station ids, the one of the cave
+     */
+    public Stations getStations() {
+        return stations;
+    }
+
+    /**
+     * @return the number of stations, ids are 0 to count - 1
+     */
+    public int getStationCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return the number of edges, ids are 0 to count - 1
+     */
+    public int getEdgeCount() {
+        return from.length;
+    }
+
+    public int getFrom(int edge) {
+        return from[edge];
+    }
+
+    public int getTo(int edge) {
+        return to[edge];
+    }
+
+    /**
+     * @return the index of the survey of the edge in the surveys of the cave
+     */
+    public int getSurveyIndex(int edge) {
+        return survey[edge];
+    }
+
+    /**
+     * @return the index of the shot of the edge in the shots of its survey
+     */
+    public int getShotIndex(int edge) {
+        return shot[edge];
+    }
+
+    public Survey getSurvey(int edge) {
+        return cave.getSurveys().get(survey[edge]);
+    }
+
+    /**
+     * @return the shot of the edge, a view if the survey keeps a table
+     */
+    public Shot getShot(int edge) {
+        return getSurvey(edge).getShots().get(shot[edge]);
+    }
+
+    public int getDegree(int station) {
+        return offsets[station + 1] - offsets[station];
+    }
+
+    /**
+     * @return the first position of the neighbours of the station
+     */
+    public int getAdjacencyStart(int station) {
+        return offsets[station];
+    }
+
+    /**
+     * @return the position after the last neighbour of the station
+     */
+    public int getAdjacencyEnd(int station) {
+        return offsets[station + 1];
+    }
+
+    /**
+     * @return the station at the position
+     */
+    public int getNeighbour(int position) {
+        return neighbours[position];
+    }
+
+    /**
+     * @return the edge leading to the station at the position
+     */
+    public int getEdge(int position) {
+        return edges[position];
+    }
+}
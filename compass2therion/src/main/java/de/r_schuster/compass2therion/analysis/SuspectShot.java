@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+/**
+ * A shot which belongs to loops that do not close, a candidate for a
+ * blunder.
+ *
+ * @author roger
+ */
+public final class SuspectShot {
+
+    private final int edge;
+    private final String survey;
+    private final String from;
+    private final String to;
+    private final int badLoops;
+    private final int loops;
+    private final double worstRelativeMisclosure;
+
+    SuspectShot(int edge, String survey, String from, String to, int badLoops, int loops, double worstRelativeMisclosure) {
+        this.edge = edge;
+        this.survey = survey;
+        this.from = from;
+        this.to = to;
+        this.badLoops = badLoops;
+        this.loops = loops;
+        this.worstRelativeMisclosure = worstRelativeMisclosure;
+    }
+
+    /**
+     * @return the edge of the shot in the station graph
+     */
+    public int getEdge() {
+        return edge;
+    }
+
+    public String getSurvey() {
+        return survey;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    /**
+     * @return the number of loops with the shot which do not close
+     */
+    public int getBadLoops() {
+        return badLoops;
+    }
+
+    /**
+     * @return the number of loops with the shot
+     */
+    public int getLoops() {
+        return loops;
+    }
+
+    /**
+     * @return the highest relative misclosure of the loops with the shot
+     */
+    public double getWorstRelativeMisclosure() {
+        return worstRelativeMisclosure;
+    }
+
+    @Override
+    public String toString() {
+        return "SuspectShot{" + "survey=" + survey + ", from=" + from + ", to=" + to + ", badLoops=" + badLoops + ", loops=" + loops + ", worstRelativeMisclosure=" + worstRelativeMisclosure + '}';
+    }
+}
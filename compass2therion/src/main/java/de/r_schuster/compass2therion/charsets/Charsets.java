@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.charsets;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks on charsets shared by reading and writing.
+ *
+ * @author roger
+ */
+public final class Charsets {
+
+    private static final String ASCII;
+
+    static {
+        char[] ascii = new char[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (char) i;
+        }
+        ASCII = new String(ascii);
+    }
+
+    private Charsets() {
+    }
+
+    /**
+     * @return true if the charset encodes all ASCII characters as single
+     * bytes with the same values and decodes these bytes back to them, so
+     * they can be read and written without going through a decoder or
+     * encoder. Charsets with shift states like ISO-2022-JP are not, their
+     * escape and shift bytes decode to something else.
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        byte[] ascii = ASCII.getBytes(StandardCharsets.US_ASCII);
+        return charset.canEncode() && Arrays.equals(ascii, ASCII.getBytes(charset))
+                && ASCII.equals(new String(ascii, charset));
+    }
+}
@@ -18,8 +18,11 @@ package de.r_schuster.compass2therion.data;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -31,18 +34,164 @@ public class Cave implements Serializable {
 
     private static final long serialVersionUID = -4267034400449771615L;
     
-    private final List<Survey> surveys = new ArrayList<>();
+    private final TrackedList<Survey> surveys = new TrackedList<>();
     private final String name;
     private final Set<Connection> connections = new HashSet<>();
+    private final Stations stations = new Stations();
+    private final List<Survey> duplicateSurveys = new ArrayList<>();
+    // first survey of each name, see indexSurveys()
+    private transient Map<String, Survey> byName;
+    private transient int indexedSurveys;
+    // changes of the list the index has seen
+    private transient int indexedChanges;
+    // true if a rename gave two surveys the same name
+    private transient boolean sharedNames;
 
     public Cave(String name) {
         this.name = name;
     }
 
+    /**
+     * Adds the survey unless the cave already has a survey with the same
+     * name. Such a duplicate is kept in {@link #getDuplicateSurveys()}
+     * instead.
+     */
     public void addSurvey(Survey survey) {
-        if (!surveys.contains(survey)) {
-            surveys.add(survey);
+        indexSurveys();
+        if (byName.containsKey(survey.getName())) {
+            duplicateSurveys.add(survey);
+            return;
         }
+        survey.setStations(stations);
+        survey.setCave(this);
+        byName.put(survey.getName(), survey);
+        surveys.add(survey);
+        indexedSurveys++;
+    }
+
+    /**
+     * Brings the index up to date with surveys added to, set in or removed
+     * from the list directly.
+     */
+    private void indexSurveys() {
+        if (byName == null || indexedChanges != surveys.changes()) {
+            byName = new HashMap<>();
+            indexedSurveys = 0;
+            indexedChanges = surveys.changes();
+            sharedNames = false;
+        }
+        for (; indexedSurveys < surveys.size(); indexedSurveys++) {
+            Survey survey = surveys.get(indexedSurveys);
+            survey.setCave(this);
+            if (byName.putIfAbsent(survey.getName(), survey) != null) {
+                sharedNames = true;
+            }
+        }
+    }
+
+    /**
+     * Keeps the index in line with a survey which got a new name.
+     */
+    void renamed(Survey survey, String oldName) {
+        if (byName == null || indexedChanges != surveys.changes()) {
+            // rebuilt on the next use
+            byName = null;
+            return;
+        }
+        if (byName.get(oldName) != survey) {
+            // no longer in the cave, not indexed yet or one of several
+            // surveys with the name
+            if (sharedNames) {
+                byName = null;
+            }
+            return;
+        }
+        unindex(survey, oldName);
+        if (byName.putIfAbsent(survey.getName(), survey) != null) {
+            sharedNames = true;
+        }
+    }
+
+    private void unindex(Survey survey, String name) {
+        if (byName.get(name) == survey) {
+            byName.remove(name);
+            if (sharedNames) {
+                // another survey may still have the name
+                for (Survey other : surveys) {
+                    if (other != survey && Objects.equals(other.getName(), name)) {
+                        byName.put(name, other);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the survey with the name or null if the cave has none
+     */
+    public Survey getSurvey(String surveyName) {
+        indexSurveys();
+        return byName.get(surveyName);
+    }
+
+    /**
+     * Removes the survey with the name. Connections are left as they are.
+     *
+     * @return the removed survey or null if the cave has no survey with the
+     * name
+     */
+    public Survey removeSurvey(String surveyName) {
+        indexSurveys();
+        Survey survey = byName.get(surveyName);
+        if (survey == null) {
+            return null;
+        }
+        surveys.remove(indexOf(survey));
+        indexedSurveys--;
+        indexedChanges = surveys.changes();
+        unindex(survey, surveyName);
+        survey.setCave(null);
+        return survey;
+    }
+
+    /**
+     * Puts the survey in the place of the survey with the same name, or adds
+     * it if there is none. Connections are left as they are.
+     *
+     * @return the replaced survey or null if the survey was added
+     */
+    public Survey replaceSurvey(Survey survey) {
+        indexSurveys();
+        Survey old = byName.get(survey.getName());
+        if (old == null) {
+            addSurvey(survey);
+            return null;
+        }
+        survey.setStations(stations);
+        survey.setCave(this);
+        surveys.set(indexOf(old), survey);
+        indexedChanges = surveys.changes();
+        byName.put(survey.getName(), survey);
+        old.setCave(null);
+        return old;
+    }
+
+    private int indexOf(Survey survey) {
+        for (int i = 0; i < surveys.size(); i++) {
+            if (surveys.get(i) == survey) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the surveys which were left out because the cave already had a
+     * survey with the same name, in the order they were added
+     */
+    public List<Survey> getDuplicateSurveys() {
+        return Collections.unmodifiableList(duplicateSurveys);
     }
 
     public List<Survey> getSurveys() {
@@ -54,9 +203,17 @@ public class Cave implements Serializable {
     }
 
     public void addConnection(Connection conn) {
+        conn.bind(stations);
         connections.add(conn);
     }
 
+    /**
+     * @return the station names of all surveys and connections of the cave
+     */
+    public Stations getStations() {
+        return stations;
+    }
+
     public Set<Connection> getConnections() {
         return connections;
     }
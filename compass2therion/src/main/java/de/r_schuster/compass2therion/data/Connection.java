@@ -27,12 +27,31 @@ public class Connection implements Serializable {
 
     private static final long serialVersionUID = 5076875597096647280L;
     
-    private String thisStation;
+    private Stations stations;
+    private int thisStation = Stations.NONE;
     private String thisSurvey;
-    private String otherStation;
+    private int otherStation = Stations.NONE;
     private String otherSurvey;
-
+    // the names while the connection has no table of stations
+    private String thisName;
+    private String otherName;
+
+    /**
+     * Creates a connection which keeps the station names itself until it is
+     * added to a cave.
+     */
     public Connection(String thisStation, String thisSurvey, String otherStation, String otherSurvey) {
+        this.thisName = thisStation;
+        this.thisSurvey = thisSurvey;
+        this.otherName = otherStation;
+        this.otherSurvey = otherSurvey;
+    }
+
+    /**
+     * @param stations table the station ids refer to
+     */
+    public Connection(Stations stations, int thisStation, String thisSurvey, int otherStation, String otherSurvey) {
+        this.stations = stations;
         this.thisStation = thisStation;
         this.thisSurvey = thisSurvey;
         this.otherStation = otherStation;
@@ -40,7 +59,11 @@ public class Connection implements Serializable {
     }
 
     public void setThisStation(String thisStation) {
-        this.thisStation = thisStation;
+        if (stations == null) {
+            this.thisName = thisStation;
+        } else {
+            this.thisStation = stations.intern(thisStation);
+        }
     }
 
     public void setThisSurvey(String thisSurvey) {
@@ -48,7 +71,11 @@ public class Connection implements Serializable {
     }
 
     public void setOtherStation(String otherStation) {
-        this.otherStation = otherStation;
+        if (stations == null) {
+            this.otherName = otherStation;
+        } else {
+            this.otherStation = stations.intern(otherStation);
+        }
     }
 
     public void setOtherSurvey(String otherSurvey) {
@@ -56,15 +83,44 @@ public class Connection implements Serializable {
     }
 
     public String getThisStation() {
+        return stations == null ? thisName : stations.getName(thisStation);
+    }
+
+    public int getThisStationId() {
         return thisStation;
     }
 
+    public int getOtherStationId() {
+        return otherStation;
+    }
+
+    /**
+     * @return the table the station ids refer to, null for a connection which
+     * keeps the names itself
+     */
+    public Stations getStations() {
+        return stations;
+    }
+
+    /**
+     * Moves the station names to another table.
+     */
+    void bind(Stations target) {
+        if (stations != target) {
+            thisStation = target.intern(getThisStation());
+            otherStation = target.intern(getOtherStation());
+            stations = target;
+            thisName = null;
+            otherName = null;
+        }
+    }
+
     public String getThisSurvey() {
         return thisSurvey;
     }
 
     public String getOtherStation() {
-        return otherStation;
+        return stations == null ? otherName : stations.getName(otherStation);
     }
 
     public String getOtherSurvey() {
@@ -74,9 +130,9 @@ public class Connection implements Serializable {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 11 * hash + Objects.hashCode(this.thisStation);
+        hash = 11 * hash + Objects.hashCode(getThisStation());
         hash = 11 * hash + Objects.hashCode(this.thisSurvey);
-        hash = 11 * hash + Objects.hashCode(this.otherStation);
+        hash = 11 * hash + Objects.hashCode(getOtherStation());
         hash = 11 * hash + Objects.hashCode(this.otherSurvey);
         return hash;
     }
@@ -93,15 +149,17 @@ public class Connection implements Serializable {
             return false;
         }
         final Connection other = (Connection) obj;
-        if (!Objects.equals(this.thisStation, other.thisStation)) {
+        if (this.stations != null && this.stations == other.stations) {
+            if (this.thisStation != other.thisStation || this.otherStation != other.otherStation) {
+                return false;
+            }
+        } else if (!Objects.equals(getThisStation(), other.getThisStation())
+                || !Objects.equals(getOtherStation(), other.getOtherStation())) {
             return false;
         }
         if (!Objects.equals(this.thisSurvey, other.thisSurvey)) {
             return false;
         }
-        if (!Objects.equals(this.otherStation, other.otherStation)) {
-            return false;
-        }
         if (!Objects.equals(this.otherSurvey, other.otherSurvey)) {
             return false;
         }
@@ -110,7 +168,7 @@ public class Connection implements Serializable {
 
     @Override
     public String toString() {
-        return "Connection{" + "thisStation=" + thisStation + ", thisSurvey=" + thisSurvey + ", otherStation=" + otherStation + ", otherSurvey=" + otherSurvey + '}';
+        return "Connection{" + "thisStation=" + getThisStation() + ", thisSurvey=" + thisSurvey + ", otherStation=" + getOtherStation() + ", otherSurvey=" + otherSurvey + '}';
     }
 
 }
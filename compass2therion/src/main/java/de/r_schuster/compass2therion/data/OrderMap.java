@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An order of a survey which reads the order of the shared layout until it is
+ * changed. The first change gives the survey its own copy and drops the
+ * layout, reading never does.
+ *
+ * @author roger
+ */
+final class OrderMap<V> extends AbstractMap<Integer, V> implements Serializable {
+
+    private static final long serialVersionUID = -3101583526722415398L;
+
+    private final Survey survey;
+    // the order of the layout or null once the survey has its own
+    private Map<Integer, V> shared;
+    private Map<Integer, V> own;
+
+    OrderMap(Survey survey) {
+        this.survey = survey;
+    }
+
+    void share(Map<Integer, V> order) {
+        shared = order;
+        own = null;
+    }
+
+    /**
+     * Copies the order of the layout, called by the survey when it drops it.
+     */
+    void unshare() {
+        if (shared != null) {
+            own = new HashMap<>(shared);
+            shared = null;
+        }
+    }
+
+    private Map<Integer, V> read() {
+        if (shared != null) {
+            return shared;
+        }
+        if (own == null) {
+            return Map.of();
+        }
+        return own;
+    }
+
+    private Map<Integer, V> write() {
+        survey.dropLayout();
+        if (own == null) {
+            own = new HashMap<>();
+        }
+        return own;
+    }
+
+    @Override
+    public int size() {
+        return read().size();
+    }
+
+    @Override
+    public V get(Object key) {
+        return read().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return read().containsKey(key);
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return write().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return read().containsKey(key) ? write().remove(key) : null;
+    }
+
+    @Override
+    public void clear() {
+        if (!read().isEmpty()) {
+            write().clear();
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public int size() {
+                return read().size();
+            }
+
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                if (shared == null) {
+                    return own == null ? Collections.emptyIterator() : own.entrySet().iterator();
+                }
+                // changes through the entries go to the copy
+                Iterator<Entry<Integer, V>> entries = shared.entrySet().iterator();
+                return new Iterator<Entry<Integer, V>>() {
+                    private Integer last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, V> next() {
+                        Entry<Integer, V> entry = entries.next();
+                        last = entry.getKey();
+                        return new SimpleEntry<Integer, V>(entry) {
+                            private static final long serialVersionUID = 1L;
+
+                            @Override
+                            public V setValue(V value) {
+                                super.setValue(value);
+                                return put(getKey(), value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        OrderMap.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+        };
+    }
+}
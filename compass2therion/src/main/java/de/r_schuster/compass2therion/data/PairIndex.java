@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import java.io.Serializable;
+
+/**
+ * Hash index from a pair of station ids to the position of the first shot
+ * between them. Open addressing without boxing, entries are only added.
+ *
+ * @author roger
+ */
+final class PairIndex implements Serializable {
+
+    private static final long serialVersionUID = -2209880150167069315L;
+
+    private int[] froms;
+    private int[] tos;
+    // position + 1, 0 is empty
+    private int[] positions;
+    private int size;
+
+    PairIndex() {
+        clear();
+    }
+
+    void clear() {
+        froms = new int[16];
+        tos = new int[16];
+        positions = new int[16];
+        size = 0;
+    }
+
+    /**
+     * @return position of the pair or -1
+     */
+    int get(int from, int to) {
+        int i = slot(from, to);
+        return positions[i] - 1;
+    }
+
+    /**
+     * Adds the pair unless it is already known.
+     *
+     * @return the position of the pair which was known before or -1
+     */
+    int putIfAbsent(int from, int to, int position) {
+        int i = slot(from, to);
+        if (positions[i] != 0) {
+            return positions[i] - 1;
+        }
+        froms[i] = from;
+        tos[i] = to;
+        positions[i] = position + 1;
+        size++;
+        if (size * 2 > positions.length) {
+            grow();
+        }
+        return -1;
+    }
+
+    private int slot(int from, int to) {
+        int mask = positions.length - 1;
+        int i = hash(from, to) & mask;
+        while (positions[i] != 0 && (froms[i] != from || tos[i] != to)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        int[] oldFroms = froms;
+        int[] oldTos = tos;
+        int[] oldPositions = positions;
+        int length = oldPositions.length * 2;
+        froms = new int[length];
+        tos = new int[length];
+        positions = new int[length];
+        for (int j = 0; j < oldPositions.length; j++) {
+            if (oldPositions[j] != 0) {
+                int i = slot(oldFroms[j], oldTos[j]);
+                froms[i] = oldFroms[j];
+                tos[i] = oldTos[j];
+                positions[i] = oldPositions[j];
+            }
+        }
+    }
+
+    private static int hash(int from, int to) {
+        int h = (from * 31 + to) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
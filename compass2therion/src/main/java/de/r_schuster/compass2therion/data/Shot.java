@@ -21,6 +21,8 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 /**
+ * A shot of a survey. Either holds its values itself or is a view on a row of
+ * a {@link ShotTable}.
  *
  * @author roger
  */
@@ -28,8 +30,16 @@ public class Shot implements Serializable {
 
     private static final long serialVersionUID = 2205653266897270882L;
 
-    private String from;
-    private String to;
+    // set for a view on a row of a table
+    private final ShotTable table;
+    private final int row;
+
+    private Stations stations;
+    private int from = Stations.NONE;
+    private int to = Stations.NONE;
+    // the names while the shot has no table of stations
+    private String fromName;
+    private String toName;
     private BigDecimal length;
     private BigDecimal inclination;
     private BigDecimal azimut;
@@ -40,108 +50,267 @@ public class Shot implements Serializable {
     private BigDecimal right;
     private BigDecimal up;
     private BigDecimal down;
-   
+
+    public Shot() {
+        this((Stations) null);
+    }
+
+    /**
+     * @param stations table for the station names, usually the one of the cave
+     */
+    public Shot(Stations stations) {
+        this.table = null;
+        this.row = -1;
+        this.stations = stations;
+    }
+
+    Shot(ShotTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
     public String getFrom() {
-        return from;
+        return getStations() == null ? fromName : getStationName(getFromId());
     }
 
     public void setFrom(String from) {
-        this.from = from;
+        if (table != null) {
+            table.setFrom(row, table.getStations().intern(from));
+        } else if (stations == null) {
+            this.fromName = from;
+        } else {
+            this.from = stations.intern(from);
+        }
     }
 
     public String getTo() {
-        return to;
+        return getStations() == null ? toName : getStationName(getToId());
     }
 
     public void setTo(String to) {
-        this.to = to;
+        if (table != null) {
+            table.setTo(row, table.getStations().intern(to));
+        } else if (stations == null) {
+            this.toName = to;
+        } else {
+            this.to = stations.intern(to);
+        }
+    }
+
+    /**
+     * @return id of the from station in {@link #getStations()},
+     * {@link Stations#NONE} if the shot has no table of stations
+     */
+    public int getFromId() {
+        return table != null ? table.getFrom(row) : from;
+    }
+
+    /**
+     * @return id of the to station in {@link #getStations()},
+     * {@link Stations#NONE} if the shot has no table of stations
+     */
+    public int getToId() {
+        return table != null ? table.getTo(row) : to;
+    }
+
+    /**
+     * @return the table the station ids refer to, null for a shot on its
+     * own, which keeps the names itself until it is added to a survey
+     */
+    public Stations getStations() {
+        return table != null ? table.getStations() : stations;
+    }
+
+    private String getStationName(int id) {
+        return id == Stations.NONE ? null : getStations().getName(id);
+    }
+
+    /**
+     * Moves the station names to another table. Views move with their table.
+     *
+     * @param ids cache of new ids by old id, filled as needed, -1 if unknown
+     */
+    void bind(Stations target, int[] ids) {
+        if (table != null || stations == target) {
+            return;
+        }
+        if (stations == null) {
+            from = target.intern(fromName);
+            to = target.intern(toName);
+            fromName = null;
+            toName = null;
+            stations = target;
+            return;
+        }
+        from = rebind(from, target, ids);
+        to = rebind(to, target, ids);
+        stations = target;
+    }
+
+    private int rebind(int id, Stations target, int[] ids) {
+        if (id == Stations.NONE) {
+            return id;
+        }
+        if (ids == null || id >= ids.length) {
+            return target.intern(stations.getName(id));
+        }
+        if (ids[id] == Stations.NONE) {
+            ids[id] = target.intern(stations.getName(id));
+        }
+        return ids[id];
+    }
+
+    BigDecimal getDecimal(ShotTable.Column column) {
+        if (table != null) {
+            return table.getDecimal(column, row);
+        }
+        switch (column) {
+            case LENGTH:
+                return length;
+            case AZIMUT:
+                return azimut;
+            case INCLINATION:
+                return inclination;
+            case REVERSE_AZIMUT:
+                return reverseAzimut;
+            case REVERSE_INCLINATION:
+                return reverseInclination;
+            case LEFT:
+                return left;
+            case RIGHT:
+                return right;
+            case UP:
+                return up;
+            default:
+                return down;
+        }
+    }
+
+    void setDecimal(ShotTable.Column column, BigDecimal value) {
+        if (table != null) {
+            table.setDecimal(column, row, value);
+            return;
+        }
+        switch (column) {
+            case LENGTH:
+                length = value;
+                break;
+            case AZIMUT:
+                azimut = value;
+                break;
+            case INCLINATION:
+                inclination = value;
+                break;
+            case REVERSE_AZIMUT:
+                reverseAzimut = value;
+                break;
+            case REVERSE_INCLINATION:
+                reverseInclination = value;
+                break;
+            case LEFT:
+                left = value;
+                break;
+            case RIGHT:
+                right = value;
+                break;
+            case UP:
+                up = value;
+                break;
+            default:
+                down = value;
+                break;
+        }
     }
 
     public BigDecimal getLength() {
-        return length;
+        return getDecimal(ShotTable.Column.LENGTH);
     }
 
     public void setLength(BigDecimal length) {
-        this.length = length;
+        setDecimal(ShotTable.Column.LENGTH, length);
     }
 
     public BigDecimal getInclination() {
-        return inclination;
+        return getDecimal(ShotTable.Column.INCLINATION);
     }
 
     public void setInclination(BigDecimal inclination) {
-        this.inclination = inclination;
+        setDecimal(ShotTable.Column.INCLINATION, inclination);
     }
 
     public BigDecimal getAzimut() {
-        return azimut;
+        return getDecimal(ShotTable.Column.AZIMUT);
     }
 
     public void setAzimut(BigDecimal azimut) {
-        this.azimut = azimut;
+        setDecimal(ShotTable.Column.AZIMUT, azimut);
     }
 
     public BigDecimal getReverseInclination() {
-        return reverseInclination;
+        return getDecimal(ShotTable.Column.REVERSE_INCLINATION);
     }
 
     public void setReverseInclination(BigDecimal reverseInclination) {
-        this.reverseInclination = reverseInclination;
+        setDecimal(ShotTable.Column.REVERSE_INCLINATION, reverseInclination);
     }
 
     public BigDecimal getReverseAzimut() {
-        return reverseAzimut;
+        return getDecimal(ShotTable.Column.REVERSE_AZIMUT);
     }
 
     public void setReverseAzimut(BigDecimal reverseAzimut) {
-        this.reverseAzimut = reverseAzimut;
+        setDecimal(ShotTable.Column.REVERSE_AZIMUT, reverseAzimut);
     }
 
     public String getComment() {
-        return comment;
+        return table != null ? table.getComment(row) : comment;
     }
 
     public void setComment(String comment) {
-        this.comment = comment;
+        if (table != null) {
+            table.setComment(row, comment);
+        } else {
+            this.comment = comment;
+        }
     }
 
     public BigDecimal getLeft() {
-        return left;
+        return getDecimal(ShotTable.Column.LEFT);
     }
 
     public void setLeft(BigDecimal left) {
-        this.left = left;
+        setDecimal(ShotTable.Column.LEFT, left);
     }
 
     public BigDecimal getRight() {
-        return right;
+        return getDecimal(ShotTable.Column.RIGHT);
     }
 
     public void setRight(BigDecimal right) {
-        this.right = right;
+        setDecimal(ShotTable.Column.RIGHT, right);
     }
 
     public BigDecimal getUp() {
-        return up;
+        return getDecimal(ShotTable.Column.UP);
     }
 
     public void setUp(BigDecimal up) {
-        this.up = up;
+        setDecimal(ShotTable.Column.UP, up);
     }
 
     public BigDecimal getDown() {
-        return down;
+        return getDecimal(ShotTable.Column.DOWN);
     }
 
     public void setDown(BigDecimal down) {
-        this.down = down;
+        setDecimal(ShotTable.Column.DOWN, down);
     }
 
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 29 * hash + Objects.hashCode(this.from);
-        hash = 29 * hash + Objects.hashCode(this.to);
+        hash = 29 * hash + Objects.hashCode(getFrom());
+        hash = 29 * hash + Objects.hashCode(getTo());
         return hash;
     }
 
@@ -157,10 +326,12 @@ public class Shot implements Serializable {
             return false;
         }
         final Shot other = (Shot) obj;
-        if (!Objects.equals(this.from, other.from)) {
+        if (getStations() == other.getStations()) {
+            return getFromId() == other.getFromId() && getToId() == other.getToId();
+        }
+        if (!Objects.equals(getFrom(), other.getFrom())) {
             return false;
         }
-        return Objects.equals(this.to, other.to);
+        return Objects.equals(getTo(), other.getTo());
     }
-
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Units, order of the shot items and passage dimensions and the other settings
+ * of a survey which come from its format. Instances are immutable and shared
+ * by all surveys with the same format.
+ *
+ * @author roger
+ */
+public final class ShotLayout implements Serializable {
+
+    private static final long serialVersionUID = 2961529035567104385L;
+
+    private final AzimutUnits azimutUnit;
+    private final LengthUnits lengthUnit;
+    private final LengthUnits dimensionUnit;
+    private final InclinationUnits inclinationUnit;
+    private final List<Dimensions> dimensions;
+    private final List<ShotItems> shotItems;
+    private final Map<Integer, Dimensions> dimensionsOrder;
+    private final Map<Integer, ShotItems> shotItemsOrder;
+    private final boolean reverse;
+    private final DimensionsAssociations dimensionsAssociation;
+
+    /**
+     * @param dimensions passage dimensions in the order of the survey
+     * @param shotItems shot items in the order of the survey
+     */
+    public ShotLayout(AzimutUnits azimutUnit, LengthUnits lengthUnit, LengthUnits dimensionUnit, InclinationUnits inclinationUnit,
+            Dimensions[] dimensions, ShotItems[] shotItems, boolean reverse, DimensionsAssociations dimensionsAssociation) {
+        this.azimutUnit = azimutUnit;
+        this.lengthUnit = lengthUnit;
+        this.dimensionUnit = dimensionUnit;
+        this.inclinationUnit = inclinationUnit;
+        this.dimensions = Collections.unmodifiableList(Arrays.asList(dimensions.clone()));
+        this.shotItems = Collections.unmodifiableList(Arrays.asList(shotItems.clone()));
+        this.dimensionsOrder = Collections.unmodifiableMap(toOrder(this.dimensions));
+        this.shotItemsOrder = Collections.unmodifiableMap(toOrder(this.shotItems));
+        this.reverse = reverse;
+        this.dimensionsAssociation = dimensionsAssociation;
+    }
+
+    // the same numbering as in the survey, starting with 1
+    private static <T> Map<Integer, T> toOrder(List<T> list) {
+        Map<Integer, T> order = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            order.put(i + 1, list.get(i));
+        }
+        return order;
+    }
+
+    public AzimutUnits getAzimutUnit() {
+        return azimutUnit;
+    }
+
+    public LengthUnits getLengthUnit() {
+        return lengthUnit;
+    }
+
+    public LengthUnits getDimensionUnit() {
+        return dimensionUnit;
+    }
+
+    public InclinationUnits getInclinationUnit() {
+        return inclinationUnit;
+    }
+
+    /**
+     * @return the passage dimensions in their order
+     */
+    public List<Dimensions> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return the shot items in their order
+     */
+    public List<ShotItems> getShotItems() {
+        return shotItems;
+    }
+
+    public Map<Integer, Dimensions> getDimensionsOrder() {
+        return dimensionsOrder;
+    }
+
+    public Map<Integer, ShotItems> getShotItemsOrder() {
+        return shotItemsOrder;
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    public DimensionsAssociations getDimensionsAssociation() {
+        return dimensionsAssociation;
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented storage of the shots of a survey. Stations are kept as ids
+ * into a {@link Stations} table and all measurements as ints in hundredths,
+ * one array per column. Comments are sparse and kept in a map. A shot takes
+ * less than 50 bytes this way instead of several hundred bytes for a
+ * {@link Shot} with its BigDecimals.
+ *
+ * Values which are not hundredths, like the zero which replaces passage
+ * dimensions, or which are too big for an int are kept aside and returned
+ * unchanged.
+ *
+ * The table is not thread safe.
+ *
+ * @author roger
+ */
+public final class ShotTable implements Serializable {
+
+    private static final long serialVersionUID = 4395153911302124101L;
+
+    /**
+     * The measurements of a shot.
+     */
+    public enum Column {
+        LENGTH, AZIMUT, INCLINATION, REVERSE_AZIMUT, REVERSE_INCLINATION, LEFT, RIGHT, UP, DOWN;
+
+        public static Column of(ShotItems item) {
+            switch (item) {
+                case LENGTH:
+                    return LENGTH;
+                case AZIMUT:
+                    return AZIMUT;
+                case INCLINATION:
+                    return INCLINATION;
+                case REVERSE_AZIMUT:
+                    return REVERSE_AZIMUT;
+                default:
+                    return REVERSE_INCLINATION;
+            }
+        }
+
+        public static Column of(Dimensions dim) {
+            switch (dim) {
+                case LEFT:
+                    return LEFT;
+                case RIGHT:
+                    return RIGHT;
+                case UP:
+                    return UP;
+                default:
+                    return DOWN;
+            }
+        }
+    }
+
+    /**
+     * A missing value, null as BigDecimal.
+     */
+    public static final long NULL = Long.MIN_VALUE;
+    /**
+     * A passage dimension which is replaced by zero, {@link BigDecimal#ZERO}
+     * as BigDecimal. Set with {@link #setPassage}.
+     */
+    public static final long PASSAGE = Long.MIN_VALUE + 1;
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final int INT_NULL = Integer.MIN_VALUE;
+    private static final int INT_PASSAGE = Integer.MIN_VALUE + 1;
+    private static final int INT_OTHER = Integer.MIN_VALUE + 2;
+
+    private Stations stations;
+    private int size;
+    private int[] from;
+    private int[] to;
+    private final int[][] values = new int[COLUMNS.length][];
+    private final Map<Integer, String> comments = new HashMap<>();
+    // values which do not fit into an int, by row * COLUMNS.length + column
+    private final Map<Long, BigDecimal> others = new HashMap<>();
+
+    private transient List<Shot> shots;
+    // first row of each pair of stations, rebuilt when stations change
+    private transient PairIndex index;
+
+    public ShotTable(Stations stations) {
+        this(stations, 16);
+    }
+
+    /**
+     * @param capacity expected number of shots
+     */
+    public ShotTable(Stations stations, int capacity) {
+        this.stations = stations;
+        int cap = Math.max(capacity, 4);
+        from = new int[cap];
+        to = new int[cap];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = new int[cap];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the table the station ids refer to
+     */
+    public Stations getStations() {
+        return stations;
+    }
+
+    /**
+     * Appends a shot without measurements.
+     *
+     * @return the row of the shot
+     */
+    public int add(int fromId, int toId) {
+        if (size == from.length) {
+            int cap = size * 2;
+            from = Arrays.copyOf(from, cap);
+            to = Arrays.copyOf(to, cap);
+            for (int c = 0; c < values.length; c++) {
+                values[c] = Arrays.copyOf(values[c], cap);
+            }
+        }
+        int row = size++;
+        from[row] = fromId;
+        to[row] = toId;
+        for (int[] column : values) {
+            column[row] = INT_NULL;
+        }
+        if (index != null) {
+            index.putIfAbsent(fromId, toId, row);
+        }
+        return row;
+    }
+
+    /**
+     * @return the row of the first shot between the stations or -1
+     */
+    public int indexOf(int fromId, int toId) {
+        if (index == null) {
+            index = new PairIndex();
+            for (int row = 0; row < size; row++) {
+                index.putIfAbsent(from[row], to[row], row);
+            }
+        }
+        return index.get(fromId, toId);
+    }
+
+    public int getFrom(int row) {
+        check(row);
+        return from[row];
+    }
+
+    public void setFrom(int row, int fromId) {
+        check(row);
+        from[row] = fromId;
+        index = null;
+    }
+
+    public int getTo(int row) {
+        check(row);
+        return to[row];
+    }
+
+    public void setTo(int row, int toId) {
+        check(row);
+        to[row] = toId;
+        index = null;
+    }
+
+    public String getComment(int row) {
+        check(row);
+        return comments.get(row);
+    }
+
+    public void setComment(int row, String comment) {
+        check(row);
+        if (comment == null) {
+            comments.remove(row);
+        } else {
+            comments.put(row, comment);
+        }
+    }
+
+    /**
+     * @return the value in hundredths, {@link #NULL} or {@link #PASSAGE}
+     * @throws ArithmeticException if the value is not given in hundredths
+     */
+    public long getHundredths(Column column, int row) {
+        check(row);
+        int value = values[column.ordinal()][row];
+        switch (value) {
+            case INT_NULL:
+                return NULL;
+            case INT_PASSAGE:
+                return PASSAGE;
+            case INT_OTHER:
+                return others.get(key(column, row)).setScale(2).unscaledValue().longValueExact();
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @param hundredths the value in hundredths, {@link #NULL} or
+     * {@link #PASSAGE}
+     */
+    public void setHundredths(Column column, int row, long hundredths) {
+        check(row);
+        int c = column.ordinal();
+        others.remove(key(column, row));
+        if (hundredths == NULL) {
+            values[c][row] = INT_NULL;
+        } else if (hundredths == PASSAGE) {
+            values[c][row] = INT_PASSAGE;
+        } else if (hundredths > INT_OTHER && hundredths <= Integer.MAX_VALUE) {
+            values[c][row] = (int) hundredths;
+        } else {
+            values[c][row] = INT_OTHER;
+            others.put(key(column, row), BigDecimal.valueOf(hundredths, 2));
+        }
+    }
+
+    /**
+     * @param hundredths a value in hundredths, {@link #NULL} or
+     * {@link #PASSAGE}
+     * @return the value as it is returned by {@link #getDecimal}
+     */
+    public static BigDecimal toDecimal(long hundredths) {
+        if (hundredths == NULL) {
+            return null;
+        }
+        if (hundredths == PASSAGE) {
+            return BigDecimal.ZERO;
+        }
+        return BigDecimal.valueOf(hundredths, 2);
+    }
+
+    public BigDecimal getDecimal(Column column, int row) {
+        check(row);
+        int value = values[column.ordinal()][row];
+        switch (value) {
+            case INT_NULL:
+                return null;
+            case INT_PASSAGE:
+                return BigDecimal.ZERO;
+            case INT_OTHER:
+                return others.get(key(column, row));
+            default:
+                return BigDecimal.valueOf(value, 2);
+        }
+    }
+
+    /**
+     * @return the values of the column of all rows, NaN where a value is
+     * missing and 0 for a passage dimension
+     */
+    public double[] getDoubles(Column column) {
+        int[] ints = values[column.ordinal()];
+        double[] doubles = new double[size];
+        for (int row = 0; row < size; row++) {
+            int value = ints[row];
+            if (value > INT_OTHER) {
+                doubles[row] = value / 100.0;
+            } else if (value == INT_NULL) {
+                doubles[row] = Double.NaN;
+            } else if (value == INT_PASSAGE) {
+                doubles[row] = 0;
+            } else {
+                doubles[row] = others.get(key(column, row)).doubleValue();
+            }
+        }
+        return doubles;
+    }
+
+    /**
+     * Marks a passage dimension, which is replaced by zero.
+     */
+    public void setPassage(Column column, int row) {
+        setHundredths(column, row, PASSAGE);
+    }
+
+    /**
+     * A zero without fraction digits is stored as a passage dimension, it is
+     * the value {@link #getDecimal} returns for one.
+     */
+    public void setDecimal(Column column, int row, BigDecimal value) {
+        if (value == null) {
+            setHundredths(column, row, NULL);
+        } else if (value.signum() == 0 && value.scale() == 0) {
+            setPassage(column, row);
+        } else if (value.scale() == 2 && value.unscaledValue().bitLength() < 32) {
+            setHundredths(column, row, value.unscaledValue().intValue());
+        } else {
+            check(row);
+            values[column.ordinal()][row] = INT_OTHER;
+            others.put(key(column, row), value);
+        }
+    }
+
+    /**
+     * @return the shot in the row as a view, changes go to the table
+     */
+    public Shot get(int row) {
+        check(row);
+        return new Shot(this, row);
+    }
+
+    /**
+     * Appends a copy of the shot. Later changes to the shot do not reach the
+     * table, use the view returned by {@link #get} instead.
+     *
+     * @return the row of the shot
+     */
+    public int add(Shot shot) {
+        int fromId = shot.getStations() == stations ? shot.getFromId() : stations.intern(shot.getFrom());
+        int toId = shot.getStations() == stations ? shot.getToId() : stations.intern(shot.getTo());
+        int row = add(fromId, toId);
+        copy(shot, row);
+        return row;
+    }
+
+    /**
+     * Replaces the values of the row by a copy of the shot.
+     */
+    public void set(int row, Shot shot) {
+        check(row);
+        int fromId = shot.getStations() == stations ? shot.getFromId() : stations.intern(shot.getFrom());
+        int toId = shot.getStations() == stations ? shot.getToId() : stations.intern(shot.getTo());
+        // the shot may be a view on this table
+        BigDecimal[] decimals = new BigDecimal[COLUMNS.length];
+        for (Column column : COLUMNS) {
+            decimals[column.ordinal()] = shot.getDecimal(column);
+        }
+        String comment = shot.getComment();
+        from[row] = fromId;
+        to[row] = toId;
+        index = null;
+        for (Column column : COLUMNS) {
+            setDecimal(column, row, decimals[column.ordinal()]);
+        }
+        setComment(row, comment);
+    }
+
+    /**
+     * Removes the row, the following rows move up by one.
+     */
+    public void remove(int row) {
+        check(row);
+        int moved = size - row - 1;
+        System.arraycopy(from, row + 1, from, row, moved);
+        System.arraycopy(to, row + 1, to, row, moved);
+        for (int[] column : values) {
+            System.arraycopy(column, row + 1, column, row, moved);
+        }
+        size--;
+        index = null;
+        if (!comments.isEmpty()) {
+            Map<Integer, String> kept = new HashMap<>(comments);
+            comments.clear();
+            kept.forEach((r, comment) -> {
+                if (r != row) {
+                    comments.put(r > row ? r - 1 : r, comment);
+                }
+            });
+        }
+        if (!others.isEmpty()) {
+            Map<Long, BigDecimal> kept = new HashMap<>(others);
+            others.clear();
+            long first = key(COLUMNS[0], row);
+            kept.forEach((key, value) -> {
+                if (key < first) {
+                    others.put(key, value);
+                } else if (key >= first + COLUMNS.length) {
+                    others.put(key - COLUMNS.length, value);
+                }
+            });
+        }
+    }
+
+    private void copy(Shot shot, int row) {
+        for (Column column : COLUMNS) {
+            setDecimal(column, row, shot.getDecimal(column));
+        }
+        setComment(row, shot.getComment());
+    }
+
+    // a shot on its own with the values of the row
+    private Shot detach(int row) {
+        Shot shot = new Shot(stations);
+        Shot view = get(row);
+        if (from[row] != Stations.NONE) {
+            shot.setFrom(view.getFrom());
+        }
+        if (to[row] != Stations.NONE) {
+            shot.setTo(view.getTo());
+        }
+        for (Column column : COLUMNS) {
+            shot.setDecimal(column, view.getDecimal(column));
+        }
+        shot.setComment(view.getComment());
+        return shot;
+    }
+
+    /**
+     * @return the shots as views on the rows of the table. Shots added or set
+     * through the list are copied into the table, shots removed or replaced
+     * are returned as copies. Views refer to rows, after a removal they show
+     * the following shot.
+     */
+    public List<Shot> asList() {
+        if (shots == null) {
+            shots = new AbstractList<Shot>() {
+                @Override
+                public Shot get(int index) {
+                    return ShotTable.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public boolean add(Shot shot) {
+                    ShotTable.this.add(shot);
+                    modCount++;
+                    return true;
+                }
+
+                @Override
+                public Shot set(int index, Shot shot) {
+                    Shot old = detach(index);
+                    ShotTable.this.set(index, shot);
+                    return old;
+                }
+
+                @Override
+                public Shot remove(int index) {
+                    Shot old = detach(index);
+                    ShotTable.this.remove(index);
+                    modCount++;
+                    return old;
+                }
+            };
+        }
+        return shots;
+    }
+
+    /**
+     * Copies the shots into a new table.
+     */
+    public static ShotTable of(List<Shot> shots, Stations stations) {
+        ShotTable table = new ShotTable(stations, shots.size());
+        for (Shot shot : shots) {
+            table.add(shot);
+        }
+        return table;
+    }
+
+    /**
+     * Moves the station names to another table.
+     */
+    void bind(Stations target) {
+        if (stations == target) {
+            return;
+        }
+        int[] ids = new int[stations.size()];
+        Arrays.fill(ids, Stations.NONE);
+        for (int row = 0; row < size; row++) {
+            from[row] = rebind(from[row], target, ids);
+            to[row] = rebind(to[row], target, ids);
+        }
+        stations = target;
+        index = null;
+    }
+
+    private int rebind(int id, Stations target, int[] ids) {
+        if (id == Stations.NONE) {
+            return id;
+        }
+        if (ids[id] == Stations.NONE) {
+            ids[id] = target.intern(stations.getName(id));
+        }
+        return ids[id];
+    }
+
+    private void check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("No shot in row " + row);
+        }
+    }
+
+    private static long key(Column column, int row) {
+        return (long) row * COLUMNS.length + column.ordinal();
+    }
+}
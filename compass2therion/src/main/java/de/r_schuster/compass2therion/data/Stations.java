@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Symbol table of the station names of a cave. Each name is stored once and
+ * gets a dense id starting with 0, so shots and connections only need to keep
+ * ints. Stations are never removed, but they can be renamed, and a station
+ * no longer used can give up its name.
+ *
+ * The table is not thread safe. Looking up names, also with
+ * {@link #intern(String)} for a name already known, does not change it.
+ *
+ * @author roger
+ */
+public final class Stations implements Serializable {
+
+    private static final long serialVersionUID = -6300592620643624683L;
+
+    /**
+     * Id of a missing station, its name is null.
+     */
+    public static final int NONE = -1;
+
+    private String[] names;
+    private int size;
+    // open addressing with linear probing, slots hold id + 1, 0 is empty
+    private int[] slots;
+
+    public Stations() {
+        this(8);
+    }
+
+    /**
+     * @param expected number of stations
+     */
+    public Stations(int expected) {
+        names = new String[Math.max(expected, 4)];
+        slots = new int[tableSize(names.length)];
+    }
+
+    private static int tableSize(int capacity) {
+        // at most half full
+        return Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) * 2;
+    }
+
+    /**
+     * @return the id of the name, a new one if the name is not known yet
+     */
+    public int intern(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        int slot = slot(name);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the name or {@link #NONE} if it is not known
+     */
+    public int find(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        return slots[slot(name)] - 1;
+    }
+
+    /**
+     * @return the name of the station, null for {@link #NONE}
+     */
+    public String getName(int id) {
+        if (id == NONE) {
+            return null;
+        }
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No station " + id);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gives a station a new name. Shots and connections referring to the
+     * station take the new name, so their hash codes change and hash based
+     * collections holding them have to be built again.
+     *
+     * @throws SurveyException if another station already has the name
+     */
+    public void rename(int id, String name) {
+        String old = getName(id);
+        if (old == null || name == null) {
+            throw new SurveyException("Cannot rename station " + id + " to " + name);
+        }
+        if (old.equals(name)) {
+            return;
+        }
+        if (find(name) != NONE) {
+            throw new SurveyException("Station name " + name + " already exists");
+        }
+        remove(slot(old));
+        names[id] = name;
+        slots[slot(name)] = id + 1;
+    }
+
+    /**
+     * Frees the name of a station which is no longer used by any shot or
+     * connection, so another station can be renamed to it. The id is not
+     * given out again, its name is null from now on.
+     */
+    public void release(int id) {
+        String name = getName(id);
+        if (name == null) {
+            return;
+        }
+        remove(slot(name));
+        names[id] = null;
+    }
+
+    // slot of the name or the empty slot where it belongs
+    private int slot(String name) {
+        int mask = slots.length - 1;
+        int i = mix(name.hashCode()) & mask;
+        while (slots[i] != 0 && !names[slots[i] - 1].equals(name)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // backward shift deletion keeps the probe sequences intact
+    private void remove(int slot) {
+        int mask = slots.length - 1;
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (slots[i] == 0) {
+                break;
+            }
+            int home = mix(names[slots[i] - 1].hashCode()) & mask;
+            // move the entry into the hole unless its home lies between hole and i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int id = 0; id < size; id++) {
+            if (names[id] == null) {
+                continue;
+            }
+            int i = mix(names[id].hashCode()) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -19,7 +19,8 @@ package de.r_schuster.compass2therion.data;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -32,10 +33,23 @@ public class Survey implements Serializable {
 
     private static final long serialVersionUID = -4577414259461364797L;
 
-    private final List<Shot> shots = new ArrayList<>();
+    // either a list of shots or a table
+    private final TrackedList<Shot> shots;
+    private final ShotTable table;
+    private Stations stations;
+    // first shot of each pair of stations in the list, see indexShots()
+    private transient PairIndex shotIndex;
+    private transient int indexedShots;
+    // changes of the list the index has seen
+    private transient int indexedChanges;
+    private final List<Shot> duplicateShots = new ArrayList<>();
+    // the cave which indexes the survey by name
+    private Cave cave;
     private final List<String> cavers = new ArrayList<>();
-    private final Map<Integer, Dimensions> dimensionsOrder = new HashMap<>();
-    private final Map<Integer, ShotItems> shotItemsOrder = new HashMap<>();
+    // read from the layout until they are changed
+    private final OrderMap<Dimensions> dimensionsOrder = new OrderMap<>(this);
+    private final OrderMap<ShotItems> shotItemsOrder = new OrderMap<>(this);
+    private ShotLayout layout;
 
     private String caveName;
     private String name;
@@ -49,6 +63,62 @@ public class Survey implements Serializable {
     private boolean reverse;
     private DimensionsAssociations dimensionsAssociation;
 
+    public Survey() {
+        this(new Stations());
+    }
+
+    /**
+     * @param stations table for the station names, usually the one of the cave
+     */
+    public Survey(Stations stations) {
+        this.shots = new TrackedList<>();
+        this.table = null;
+        this.stations = stations;
+    }
+
+    /**
+     * Creates a survey which keeps its shots in the columns of the table.
+     */
+    public Survey(ShotTable table) {
+        this.shots = null;
+        this.table = table;
+        this.stations = table.getStations();
+    }
+
+    /**
+     * @return the table with the shots or null if the survey keeps a list of
+     * shots
+     */
+    public ShotTable getShotTable() {
+        return table;
+    }
+
+    /**
+     * @return the table the station ids of the shots refer to
+     */
+    public Stations getStations() {
+        return stations;
+    }
+
+    /**
+     * Moves the station names of all shots to another table, usually the one
+     * of the cave.
+     */
+    public void setStations(Stations target) {
+        if (table != null) {
+            table.bind(target);
+            stations = target;
+            return;
+        }
+        int[] ids = new int[stations == target ? 0 : stations.size()];
+        Arrays.fill(ids, Stations.NONE);
+        for (Shot shot : shots) {
+            shot.bind(target, shot.getStations() == stations ? ids : null);
+        }
+        stations = target;
+        shotIndex = null;
+    }
+
     public void addCaver(String caver) {
         cavers.add(caver);
     }
@@ -57,14 +127,81 @@ public class Survey implements Serializable {
         return cavers;
     }
 
+    /**
+     * Adds the shot unless the survey already has a shot from the same
+     * station to the same station. Such a duplicate is kept in
+     * {@link #getDuplicateShots()} instead.
+     */
     public void addShot(Shot shot) {
-        if (!shots.contains(shot)) {
+        if (table != null) {
+            int from = shot.getStations() == stations ? shot.getFromId() : stations.find(shot.getFrom());
+            int to = shot.getStations() == stations ? shot.getToId() : stations.find(shot.getTo());
+            boolean known = (from != Stations.NONE || shot.getFrom() == null) && (to != Stations.NONE || shot.getTo() == null);
+            if (!known || table.indexOf(from, to) < 0) {
+                table.add(shot);
+            } else {
+                duplicateShots.add(shot);
+            }
+            return;
+        }
+        shot.bind(stations, null);
+        indexShots();
+        if (shotIndex.putIfAbsent(fromId(shot), toId(shot), shots.size()) < 0) {
             shots.add(shot);
+            indexedShots++;
+        } else {
+            duplicateShots.add(shot);
+        }
+    }
+
+    /**
+     * Brings the index up to date with shots added to, set in or removed
+     * from the list directly. Stations changed on a shot after it was added
+     * are not seen.
+     */
+    private void indexShots() {
+        if (shotIndex == null || indexedChanges != shots.changes()) {
+            shotIndex = new PairIndex();
+            indexedShots = 0;
+            indexedChanges = shots.changes();
+        }
+        for (; indexedShots < shots.size(); indexedShots++) {
+            Shot known = shots.get(indexedShots);
+            known.bind(stations, null);
+            shotIndex.putIfAbsent(fromId(known), toId(known), indexedShots);
         }
     }
 
+    // views on another table keep their ids
+    private int fromId(Shot shot) {
+        return shot.getStations() == stations ? shot.getFromId() : stations.intern(shot.getFrom());
+    }
+
+    private int toId(Shot shot) {
+        return shot.getStations() == stations ? shot.getToId() : stations.intern(shot.getTo());
+    }
+
+    /**
+     * Records a shot which was left out because the survey already has a shot
+     * between its stations. Used by parsers which fill the table directly.
+     */
+    public void addDuplicateShot(Shot shot) {
+        duplicateShots.add(shot);
+    }
+
+    /**
+     * @return the shots which were left out because the survey already had a
+     * shot between the same stations, in the order they were added
+     */
+    public List<Shot> getDuplicateShots() {
+        return Collections.unmodifiableList(duplicateShots);
+    }
+
+    /**
+     * @return the shots, views on the rows if the survey keeps a table
+     */
     public List<Shot> getShots() {
-        return shots;
+        return table != null ? table.asList() : shots;
     }
 
     public String getCaveName() {
@@ -80,7 +217,15 @@ public class Survey implements Serializable {
     }
 
     public void setName(String name) {
+        String old = this.name;
         this.name = name;
+        if (cave != null && !Objects.equals(old, name)) {
+            cave.renamed(this, old);
+        }
+    }
+
+    void setCave(Cave cave) {
+        this.cave = cave;
     }
 
     public String getComment() {
@@ -112,6 +257,7 @@ public class Survey implements Serializable {
     }
 
     public void setInclinationUnit(InclinationUnits inclinationUnits) {
+        dropLayout();
         this.inclinationUnit = inclinationUnits;
     }
 
@@ -120,6 +266,7 @@ public class Survey implements Serializable {
     }
 
     public void setAzimutUnit(AzimutUnits azimutUnits) {
+        dropLayout();
         this.azimutUnit = azimutUnits;
     }
 
@@ -128,6 +275,7 @@ public class Survey implements Serializable {
     }
 
     public void setLengthUnit(LengthUnits lengthUnit) {
+        dropLayout();
         this.lengthUnit = lengthUnit;
     }
 
@@ -136,22 +284,64 @@ public class Survey implements Serializable {
     }
 
     public void setDimensionUnit(LengthUnits dimensionUnit) {
+        dropLayout();
         this.dimensionUnit = dimensionUnit;
     }
 
+    /**
+     * @return the order, changes to the map drop the layout
+     */
     public Map<Integer, Dimensions> getDimensionsOrder() {
         return dimensionsOrder;
     }
 
+    /**
+     * @return the order, changes to the map drop the layout
+     */
     public Map<Integer, ShotItems> getShotItemsOrder() {
         return shotItemsOrder;
     }
 
+    /**
+     * @return the layout the survey was read with or null if the survey has
+     * been changed since
+     */
+    public ShotLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Takes units, orders, backsights and dimension association from the
+     * layout. The layout is kept until one of them is changed, the order maps
+     * read from it until then.
+     */
+    public void setLayout(ShotLayout layout) {
+        this.layout = layout;
+        this.azimutUnit = layout.getAzimutUnit();
+        this.lengthUnit = layout.getLengthUnit();
+        this.dimensionUnit = layout.getDimensionUnit();
+        this.inclinationUnit = layout.getInclinationUnit();
+        this.dimensionsOrder.share(layout.getDimensionsOrder());
+        this.shotItemsOrder.share(layout.getShotItemsOrder());
+        this.reverse = layout.isReverse();
+        this.dimensionsAssociation = layout.getDimensionsAssociation();
+    }
+
+    // the survey no longer matches the layout it was read with
+    void dropLayout() {
+        if (layout != null) {
+            layout = null;
+            dimensionsOrder.unshare();
+            shotItemsOrder.unshare();
+        }
+    }
+
     public boolean isReverse() {
         return reverse;
     }
 
     public void setReverse(boolean reverse) {
+        dropLayout();
         this.reverse = reverse;
     }
 
@@ -160,6 +350,7 @@ public class Survey implements Serializable {
     }
 
     public void setDimensionsAssociation(DimensionsAssociations dimensionsAssociation) {
+        dropLayout();
         this.dimensionsAssociation = dimensionsAssociation;
     }
 
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * List which counts every change other than adding at its end. An index over
+ * the elements can then take in appended elements and is built again once the
+ * count has changed, also for a set or a remove followed by an add, which leave
+ * the size as it was.
+ *
+ * @author roger
+ */
+final class TrackedList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 6154027368839467791L;
+
+    private final ArrayList<E> elements = new ArrayList<>();
+    private int changes;
+
+    /**
+     * @return the number of changes which were not appends
+     */
+    int changes() {
+        return changes;
+    }
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E old = elements.set(index, element);
+        changes++;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index != elements.size()) {
+            changes++;
+        }
+        elements.add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = elements.remove(index);
+        changes++;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        changes++;
+        modCount++;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Stations;
+import de.r_schuster.compass2therion.data.Survey;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the parts of the survey network of a cave which are not connected to
+ * each other. Like in Therion each survey has its own stations, which are
+ * joined by the shots of the survey and by the connections of the cave. The
+ * stations are kept in disjoint sets, so the analysis runs in nearly linear
+ * time.
+ *
+ * @author roger
+ */
+public class ConnectivityAnalysis {
+
+    private static final BigDecimal FEET = new BigDecimal("0.3048");
+
+    /**
+     * @return the components, the one with the first survey of the cave
+     * first. A survey without shots forms a component of its own.
+     */
+    public List<NetworkComponent> analyze(Cave cave) {
+        Stations stations = cave.getStations();
+        List<Survey> surveys = cave.getSurveys();
+        int count = surveys.size();
+
+        // the stations of survey i are the nodes first[i] to first[i + 1] - 1
+        int[][] ids = new int[count][];
+        int[] first = new int[count + 1];
+        Map<String, Integer> bySurvey = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            ids[i] = SurveyStations.of(surveys.get(i), stations);
+            first[i + 1] = first[i] + ids[i].length;
+            bySurvey.putIfAbsent(surveys.get(i).getName(), i);
+        }
+
+        UnionFind sets = new UnionFind(first[count]);
+        for (int i = 0; i < count; i++) {
+            int[] shots = shotStations(surveys.get(i), stations);
+            for (int s = 0; s < shots.length; s += 2) {
+                int from = node(ids, first, i, shots[s]);
+                int to = node(ids, first, i, shots[s + 1]);
+                if (from >= 0 && to >= 0) {
+                    sets.union(from, to);
+                }
+            }
+        }
+        for (Connection conn : cave.getConnections()) {
+            Integer thisSurvey = bySurvey.get(conn.getThisSurvey());
+            Integer otherSurvey = bySurvey.get(conn.getOtherSurvey());
+            if (thisSurvey == null || otherSurvey == null) {
+                continue;
+            }
+            boolean bound = conn.getStations() == stations;
+            int thisNode = node(ids, first, thisSurvey, bound ? conn.getThisStationId() : stations.find(conn.getThisStation()));
+            int otherNode = node(ids, first, otherSurvey, bound ? conn.getOtherStationId() : stations.find(conn.getOtherStation()));
+            if (thisNode >= 0 && otherNode >= 0) {
+                sets.union(thisNode, otherNode);
+            }
+        }
+
+        // components numbered by their first node
+        int[] component = new int[first[count]];
+        Arrays.fill(component, -1);
+        List<Builder> builders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Survey survey = surveys.get(i);
+            if (ids[i].length == 0 || ids[i][ids[i].length - 1] == Stations.NONE) {
+                Builder empty = new Builder();
+                empty.surveys.add(survey.getName());
+                builders.add(empty);
+                continue;
+            }
+            for (int n = first[i]; n < first[i + 1]; n++) {
+                if (ids[i][n - first[i]] == Stations.NONE) {
+                    continue;
+                }
+                int root = sets.find(n);
+                if (component[root] < 0) {
+                    component[root] = builders.size();
+                    builders.add(new Builder());
+                }
+                Builder builder = builders.get(component[root]);
+                builder.stations++;
+                if (builder.lastSurvey != i) {
+                    builder.lastSurvey = i;
+                    builder.surveys.add(survey.getName());
+                }
+            }
+
+            LengthUnits lengthUnit = survey.getLengthUnit();
+            boolean feet = lengthUnit != null && lengthUnit != LengthUnits.METRES;
+            int[] shots = shotStations(survey, stations);
+            List<Shot> list = survey.getShots();
+            for (int s = 0; s < shots.length; s += 2) {
+                int node = node(ids, first, i, shots[s]);
+                if (node < 0) {
+                    node = node(ids, first, i, shots[s + 1]);
+                }
+                if (node < 0) {
+                    continue;
+                }
+                Builder builder = builders.get(component[sets.find(node)]);
+                builder.shots++;
+                BigDecimal length = list.get(s / 2).getLength();
+                if (length != null) {
+                    builder.length = builder.length.add(feet ? length.multiply(FEET) : length);
+                }
+            }
+        }
+
+        List<NetworkComponent> components = new ArrayList<>(builders.size());
+        for (Builder builder : builders) {
+            BigDecimal length = builder.length.setScale(2, RoundingMode.HALF_UP);
+            components.add(new NetworkComponent(builder.surveys, builder.stations, builder.shots, length));
+        }
+        return components;
+    }
+
+    /**
+     * @return from and to station of each shot as ids into the stations of
+     * the cave, {@link Stations#NONE} for a missing or unknown station
+     */
+    private static int[] shotStations(Survey survey, Stations stations) {
+        ShotTable table = survey.getShotTable();
+        if (table != null) {
+            int[] shots = new int[table.size() * 2];
+            for (int row = 0; row < table.size(); row++) {
+                shots[row * 2] = id(stations, table.getStations(), table.getFrom(row));
+                shots[row * 2 + 1] = id(stations, table.getStations(), table.getTo(row));
+            }
+            return shots;
+        }
+        List<Shot> list = survey.getShots();
+        int[] shots = new int[list.size() * 2];
+        for (int s = 0; s < list.size(); s++) {
+            Shot shot = list.get(s);
+            boolean bound = shot.getStations() == stations;
+            shots[s * 2] = bound ? shot.getFromId() : stations.find(shot.getFrom());
+            shots[s * 2 + 1] = bound ? shot.getToId() : stations.find(shot.getTo());
+        }
+        return shots;
+    }
+
+    private static int id(Stations stations, Stations table, int id) {
+        if (table == stations || id == Stations.NONE) {
+            return id;
+        }
+        return stations.find(table.getName(id));
+    }
+
+    // node of the station in the survey or -1
+    private static int node(int[][] ids, int[] first, int survey, int id) {
+        if (id == Stations.NONE) {
+            return -1;
+        }
+        int i = Arrays.binarySearch(ids[survey], id);
+        return i < 0 ? -1 : first[survey] + i;
+    }
+
+    private static final class Builder {
+
+        private final List<String> surveys = new ArrayList<>();
+        private int lastSurvey = -1;
+        private int stations;
+        private int shots;
+        private BigDecimal length = BigDecimal.ZERO;
+    }
+}
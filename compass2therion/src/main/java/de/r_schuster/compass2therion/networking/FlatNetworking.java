@@ -18,10 +18,8 @@ package de.r_schuster.compass2therion.networking;
 
 import de.r_schuster.compass2therion.data.Cave;
 import de.r_schuster.compass2therion.data.Connection;
-import de.r_schuster.compass2therion.data.Shot;
-import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.data.Stations;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -37,37 +35,37 @@ public class FlatNetworking implements Networking {
 
     @Override
     public void networking(Cave cave) {
+        Stations stations = cave.getStations();
 
-        Map<String, Set<String>> mapping = new HashMap<>();
-
-        for (Survey surv : cave.getSurveys()) {
-            String name = surv.getName();
-            Set<String> set = new HashSet<>();
-            mapping.put(name, set);
-            for (Shot shot : surv.getShots()) {
-                String from = shot.getFrom();
-                String to = shot.getTo();
-                // data reduction. It doesn't matter if the connection is from or to station
-                set.add(from);
-                set.add(to);
-            }
-        }
+        // sorted ids of the stations of each survey
+        Map<String, int[]> mapping = SurveyStations.of(cave);
 
         Set<String> done = new HashSet<>();
 
         // compare each set of stations to all _other_ sets of stations
-        for (Map.Entry<String, Set<String>> next : mapping.entrySet()) {
+        for (Map.Entry<String, int[]> next : mapping.entrySet()) {
             String thisSurveyName = next.getKey();
-            Set<String> stationsInThisSurvey = next.getValue();
-            for (Map.Entry<String, Set<String>> other : mapping.entrySet()) {
+            int[] stationsInThisSurvey = next.getValue();
+            for (Map.Entry<String, int[]> other : mapping.entrySet()) {
                 String otherSurveyName = other.getKey();
                 if (!otherSurveyName.equals(thisSurveyName) && !done.contains(otherSurveyName)) {
-                    Set<String> otherStations = other.getValue();
-                    Set<String> intersection = new HashSet<>(stationsInThisSurvey);
-                    intersection.retainAll(otherStations);
-                    for (String s : intersection) {
-                        Connection conn = new Connection(s, thisSurveyName, s, otherSurveyName);
-                        cave.addConnection(conn);
+                    int[] otherStations = other.getValue();
+                    // intersection of two sorted arrays
+                    int i = 0;
+                    int j = 0;
+                    while (i < stationsInThisSurvey.length && j < otherStations.length) {
+                        int s = stationsInThisSurvey[i];
+                        int o = otherStations[j];
+                        if (s < o) {
+                            i++;
+                        } else if (s > o) {
+                            j++;
+                        } else {
+                            Connection conn = new Connection(stations, s, thisSurveyName, s, otherSurveyName);
+                            cave.addConnection(conn);
+                            i++;
+                            j++;
+                        }
                     }
                     done.add(thisSurveyName);
                 }
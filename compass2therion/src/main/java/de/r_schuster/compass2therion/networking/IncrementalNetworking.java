@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.Stations;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Networking which keeps its index from each station to the surveys
+ * containing it after {@link #networking(Cave)}. Surveys can then be added,
+ * removed or replaced, and only the connections of the changed survey are
+ * updated, at a cost which grows with the stations of the survey and the
+ * surveys sharing them.
+ *
+ * Connections are the same as those of {@link FlatNetworking}, but the
+ * survey which came first into the cave is always this survey of a
+ * connection. Adding, removing and replacing surveys leaves the cave with
+ * the connections a new networking of it would give.
+ *
+ * Surveys are indexed by identity, so a survey renamed after it was indexed
+ * can still be removed or replaced under its new name. Its connections are
+ * found under the old and the new name.
+ *
+ * The index is not thread safe.
+ *
+ * @author roger
+ */
+public class IncrementalNetworking implements Networking {
+
+    private Cave cave;
+    private final Map<Survey, Indexed> surveys = new IdentityHashMap<>();
+    // surveys by station id shifted by one
+    private final List<List<Indexed>> postings = new ArrayList<>();
+    private long next;
+
+    /**
+     * Replaces the connections of the cave with those of its surveys and
+     * builds the index for later changes.
+     */
+    @Override
+    public void networking(Cave cave) {
+        this.cave = cave;
+        cave.getConnections().clear();
+        surveys.clear();
+        postings.clear();
+        next = 0;
+        for (Survey survey : cave.getSurveys()) {
+            index(survey, next++);
+        }
+    }
+
+    /**
+     * Adds the survey to the cave and connects it.
+     *
+     * @return false if the cave already has a survey with the name
+     */
+    public boolean addSurvey(Survey survey) {
+        Cave c = cave();
+        int before = c.getSurveys().size();
+        c.addSurvey(survey);
+        if (c.getSurveys().size() == before) {
+            return false;
+        }
+        index(survey, next++);
+        return true;
+    }
+
+    /**
+     * Removes the survey from the cave together with its connections.
+     *
+     * @return the removed survey or null if the cave has no survey with the
+     * name
+     * @throws SurveyException if the survey came into the cave some other
+     * way than through this networking
+     */
+    public Survey removeSurvey(String surveyName) {
+        Cave c = cave();
+        Survey survey = c.getSurvey(surveyName);
+        if (survey == null) {
+            return null;
+        }
+        Indexed indexed = indexed(survey);
+        c.removeSurvey(surveyName);
+        unindex(indexed);
+        return survey;
+    }
+
+    /**
+     * Puts the survey in the place of the survey with the same name and
+     * replaces its connections. Adds the survey if there is none.
+     *
+     * @return the replaced survey or null if the survey was added
+     * @throws SurveyException if the replaced survey came into the cave some
+     * other way than through this networking
+     */
+    public Survey replaceSurvey(Survey survey) {
+        Cave c = cave();
+        Survey old = c.getSurvey(survey.getName());
+        Indexed indexed = old == null ? null : indexed(old);
+        Survey replaced = c.replaceSurvey(survey);
+        if (indexed == null) {
+            index(survey, next++);
+        } else {
+            unindex(indexed);
+            index(survey, indexed.order);
+        }
+        return replaced;
+    }
+
+    private Cave cave() {
+        if (cave == null) {
+            throw new IllegalStateException("No cave, networking(Cave) has to be called first");
+        }
+        return cave;
+    }
+
+    private Indexed indexed(Survey survey) {
+        Indexed indexed = surveys.get(survey);
+        if (indexed == null) {
+            throw new SurveyException("Survey " + survey.getName() + " was not added through the networking");
+        }
+        return indexed;
+    }
+
+    private void index(Survey survey, long order) {
+        Stations stations = cave.getStations();
+        Indexed indexed = new Indexed(survey, order, SurveyStations.of(survey, stations));
+        for (int id : indexed.stations) {
+            List<Indexed> posting = posting(id);
+            for (Indexed other : posting) {
+                cave.addConnection(connection(stations, id, other, indexed, other.survey.getName(), survey.getName()));
+            }
+            posting.add(indexed);
+        }
+        surveys.put(survey, indexed);
+    }
+
+    private void unindex(Indexed indexed) {
+        Stations stations = cave.getStations();
+        surveys.remove(indexed.survey);
+        for (int id : indexed.stations) {
+            List<Indexed> posting = posting(id);
+            posting.remove(indexed);
+            for (Indexed other : posting) {
+                // either survey may have been renamed since the connection was made
+                for (String otherName : names(other)) {
+                    for (String name : names(indexed)) {
+                        cave.getConnections().remove(connection(stations, id, other, indexed, otherName, name));
+                    }
+                }
+            }
+        }
+    }
+
+    private static String[] names(Indexed indexed) {
+        String name = indexed.survey.getName();
+        return name.equals(indexed.name) ? new String[]{name} : new String[]{name, indexed.name};
+    }
+
+    private List<Indexed> posting(int id) {
+        int index = Postings.index(id);
+        while (postings.size() <= index) {
+            postings.add(new ArrayList<>(2));
+        }
+        return postings.get(index);
+    }
+
+    private static Connection connection(Stations stations, int id, Indexed a, Indexed b, String aName, String bName) {
+        return a.order < b.order
+                ? new Connection(stations, id, aName, id, bName)
+                : new Connection(stations, id, bName, id, aName);
+    }
+
+    private static final class Indexed {
+
+        private final Survey survey;
+        // the name when the survey was indexed
+        private final String name;
+        private final long order;
+        private final int[] stations;
+
+        private Indexed(Survey survey, long order, int[] stations) {
+            this.survey = survey;
+            this.name = survey.getName();
+            this.order = order;
+            this.stations = stations;
+        }
+    }
+}
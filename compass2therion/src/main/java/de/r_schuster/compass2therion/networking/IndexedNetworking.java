@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.Stations;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Same connections as {@link FlatNetworking}, but instead of comparing the
+ * stations of every survey with those of every other survey it builds an
+ * index from each station to the surveys containing it. The cost grows with
+ * the number of stations and connections, not with the square of the number
+ * of surveys.
+ *
+ * The connections are added to the cave in the order {@link FlatNetworking}
+ * adds them.
+ *
+ * @author roger
+ */
+public class IndexedNetworking implements Networking {
+
+    private final boolean parallel;
+    private final boolean minimal;
+
+    public IndexedNetworking() {
+        this(false);
+    }
+
+    /**
+     * @param parallel builds the index and the connections on all processor
+     * cores
+     */
+    protected IndexedNetworking(boolean parallel) {
+        this(parallel, false);
+    }
+
+    /**
+     * @param minimal connects only the first survey of a station to each
+     * other survey with the station instead of all pairs of them
+     */
+    IndexedNetworking(boolean parallel, boolean minimal) {
+        this.parallel = parallel;
+        this.minimal = minimal;
+    }
+
+    @Override
+    public void networking(Cave cave) {
+        Stations stations = cave.getStations();
+        Map<String, int[]> mapping = SurveyStations.of(cave, parallel);
+
+        // surveys are numbered in the order FlatNetworking visits them
+        String[] names = new String[mapping.size()];
+        int[][] stationsBySurvey = new int[mapping.size()][];
+        int rank = 0;
+        for (Map.Entry<String, int[]> entry : mapping.entrySet()) {
+            names[rank] = entry.getKey();
+            stationsBySurvey[rank] = entry.getValue();
+            rank++;
+        }
+
+        Postings postings = Postings.of(stationsBySurvey, stations.size(), parallel ? ForkJoinPool.getCommonPoolParallelism() : 1);
+
+        // each survey connects to the surveys with a higher number sharing one
+        // of its stations, counted first to give each survey its own range
+        int[] counts = new int[names.length + 1];
+        surveys(names.length).forEach(r -> {
+            int count = 0;
+            for (int id : stationsBySurvey[r]) {
+                int station = Postings.index(id);
+                if (connects(postings, station, r)) {
+                    count += postings.end(station) - postings.after(station, r);
+                }
+            }
+            counts[r + 1] = count;
+        });
+        for (int r = 0; r < names.length; r++) {
+            counts[r + 1] += counts[r];
+        }
+
+        // the other survey and the station, sorted like FlatNetworking visits
+        // them
+        long[] pairs = new long[counts[names.length]];
+        Connection[] connections = new Connection[pairs.length];
+        surveys(names.length).forEach(r -> {
+            int p = counts[r];
+            for (int id : stationsBySurvey[r]) {
+                int station = Postings.index(id);
+                if (!connects(postings, station, r)) {
+                    continue;
+                }
+                for (int i = postings.after(station, r); i < postings.end(station); i++) {
+                    pairs[p++] = ((long) postings.survey(i) << 32) | station;
+                }
+            }
+            Arrays.sort(pairs, counts[r], counts[r + 1]);
+            for (p = counts[r]; p < counts[r + 1]; p++) {
+                String other = names[(int) (pairs[p] >>> 32)];
+                int s = Postings.id((int) pairs[p]);
+                connections[p] = new Connection(stations, s, names[r], s, other);
+            }
+        });
+
+        for (Connection conn : connections) {
+            cave.addConnection(conn);
+        }
+    }
+
+    private boolean connects(Postings postings, int station, int survey) {
+        return !minimal || postings.survey(postings.start(station)) == survey;
+    }
+
+    private IntStream surveys(int count) {
+        IntStream surveys = IntStream.range(0, count);
+        return parallel ? surveys.parallel() : surveys;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+/**
+ * Connects the surveys sharing a station with as few connections as
+ * possible. Where {@link FlatNetworking} connects every pair of the k surveys
+ * containing a station, this connects the first of them to each of the
+ * others, k - 1 connections which equate the same stations.
+ *
+ * Each station gets its own connections even if the surveys are already
+ * connected by another station, as leaving them out would make two stations
+ * out of one.
+ *
+ * The connections are a subset of those of {@link FlatNetworking}, added in
+ * the same order.
+ *
+ * @author roger
+ */
+public class MinimalNetworking extends IndexedNetworking {
+
+    public MinimalNetworking() {
+        this(false);
+    }
+
+    /**
+     * @param parallel builds the connections on all processor cores
+     */
+    public MinimalNetworking(boolean parallel) {
+        super(parallel, true);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A part of the survey network which is connected by shots and connections,
+ * but not to the rest of the cave.
+ *
+ * @author roger
+ */
+public final class NetworkComponent {
+
+    private final List<String> surveys;
+    private final int stationCount;
+    private final int shotCount;
+    private final BigDecimal length;
+
+    NetworkComponent(List<String> surveys, int stationCount, int shotCount, BigDecimal length) {
+        this.surveys = Collections.unmodifiableList(surveys);
+        this.stationCount = stationCount;
+        this.shotCount = shotCount;
+        this.length = length;
+    }
+
+    /**
+     * @return the names of the surveys with stations in the component, in
+     * the order of the cave. A survey whose shots are not connected among
+     * themselves is part of several components.
+     */
+    public List<String> getSurveys() {
+        return surveys;
+    }
+
+    /**
+     * @return the number of stations, a station shared by several surveys
+     * counts once for each of them
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    public int getShotCount() {
+        return shotCount;
+    }
+
+    /**
+     * @return the summed length of the shots in metres, rounded to
+     * centimetres
+     */
+    public BigDecimal getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkComponent{" + "surveys=" + surveys + ", stationCount=" + stationCount + ", shotCount=" + shotCount + ", length=" + length + '}';
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+/**
+ * {@link IndexedNetworking} on all processor cores. The stations of the
+ * surveys are collected, the index from stations to surveys is built and the
+ * connections of each survey are created in parallel. Only adding the
+ * connections to the cave is sequential, they are added in the order
+ * {@link FlatNetworking} adds them.
+ *
+ * @author roger
+ */
+public class ParallelNetworking extends IndexedNetworking {
+
+    public ParallelNetworking() {
+        super(true);
+    }
+}
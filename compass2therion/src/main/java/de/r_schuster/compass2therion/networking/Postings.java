@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Inverted index from each station to the surveys containing it, as one
+ * array of survey numbers grouped by station. The surveys of a station are
+ * in ascending order. Stations are numbered by their id shifted by one, so
+ * the missing station {@link de.r_schuster.compass2therion.data.Stations#NONE}
+ * has a place as well.
+ *
+ * @author roger
+ */
+final class Postings {
+
+    private final int[] offsets;
+    private final int[] surveys;
+
+    private Postings(int[] offsets, int[] surveys) {
+        this.offsets = offsets;
+        this.surveys = surveys;
+    }
+
+    /**
+     * The surveys are split into ranges, each range counts its postings by
+     * station and fills them in on its own. The ranges of a station follow
+     * each other in the order of the surveys, so its surveys stay in
+     * ascending order.
+     *
+     * @param stationsBySurvey sorted unique station ids of each survey
+     * @param stationCount number of stations in the station table
+     * @param ranges number of ranges which are built in parallel, 1 builds
+     * the index sequentially
+     */
+    static Postings of(int[][] stationsBySurvey, int stationCount, int ranges) {
+        final int count = Math.max(1, Math.min(ranges, stationsBySurvey.length));
+        // postings of each range by station, then the position of its first one
+        int[][] positions = new int[count][stationCount + 1];
+        ranges(count).forEach(range -> {
+            int[] postings = positions[range];
+            for (int survey = first(range, count, stationsBySurvey.length); survey < first(range + 1, count, stationsBySurvey.length); survey++) {
+                for (int id : stationsBySurvey[survey]) {
+                    postings[index(id)]++;
+                }
+            }
+        });
+
+        int[] offsets = new int[stationCount + 2];
+        for (int s = 0; s <= stationCount; s++) {
+            int offset = offsets[s];
+            for (int[] postings : positions) {
+                int n = postings[s];
+                postings[s] = offset;
+                offset += n;
+            }
+            offsets[s + 1] = offset;
+        }
+
+        int[] surveys = new int[offsets[stationCount + 1]];
+        ranges(count).forEach(range -> {
+            int[] fill = positions[range];
+            for (int survey = first(range, count, stationsBySurvey.length); survey < first(range + 1, count, stationsBySurvey.length); survey++) {
+                for (int id : stationsBySurvey[survey]) {
+                    surveys[fill[index(id)]++] = survey;
+                }
+            }
+        });
+        return new Postings(offsets, surveys);
+    }
+
+    private static IntStream ranges(int count) {
+        IntStream ranges = IntStream.range(0, count);
+        return count > 1 ? ranges.parallel() : ranges;
+    }
+
+    // first survey of the range
+    private static int first(int range, int count, int surveys) {
+        return (int) ((long) surveys * range / count);
+    }
+
+    static int index(int id) {
+        return id + 1;
+    }
+
+    static int id(int index) {
+        return index - 1;
+    }
+
+    int stations() {
+        return offsets.length - 1;
+    }
+
+    int start(int station) {
+        return offsets[station];
+    }
+
+    int end(int station) {
+        return offsets[station + 1];
+    }
+
+    int survey(int posting) {
+        return surveys[posting];
+    }
+
+    /**
+     * @return the first posting of the station with a survey after the given
+     * one
+     */
+    int after(int station, int survey) {
+        int i = Arrays.binarySearch(surveys, offsets[station], offsets[station + 1], survey);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+}
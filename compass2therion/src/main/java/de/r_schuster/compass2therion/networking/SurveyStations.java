@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Stations;
+import de.r_schuster.compass2therion.data.Survey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The stations of each survey of a cave as sorted ids into the station table
+ * of the cave. Shared by the networking implementations, which emit the same
+ * connections in the same order.
+ *
+ * @author roger
+ */
+final class SurveyStations {
+
+    private SurveyStations() {
+    }
+
+    /**
+     * @return sorted unique station ids by survey name, a later survey with
+     * the same name replaces an earlier one
+     */
+    static Map<String, int[]> of(Cave cave) {
+        return of(cave, false);
+    }
+
+    /**
+     * @param parallel reads the surveys on all processor cores
+     */
+    static Map<String, int[]> of(Cave cave, boolean parallel) {
+        List<Survey> surveys = cave.getSurveys();
+        Stations stations = cave.getStations();
+        int[][] ids = new int[surveys.size()][];
+        if (parallel) {
+            // surveys with stations outside the table of the cave add names
+            // to it, which is only done by this thread
+            for (int i = 0; i < ids.length; i++) {
+                if (!bound(surveys.get(i), stations)) {
+                    ids[i] = of(surveys.get(i), stations);
+                }
+            }
+            IntStream.range(0, ids.length).parallel()
+                    .filter(i -> ids[i] == null)
+                    .forEach(i -> ids[i] = of(surveys.get(i), stations));
+        } else {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = of(surveys.get(i), stations);
+            }
+        }
+
+        Map<String, int[]> mapping = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            mapping.put(surveys.get(i).getName(), ids[i]);
+        }
+        return mapping;
+    }
+
+    private static boolean bound(Survey surv, Stations stations) {
+        ShotTable table = surv.getShotTable();
+        if (table != null) {
+            return table.getStations() == stations;
+        }
+        for (Shot shot : surv.getShots()) {
+            if (shot.getStations() != stations) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return sorted unique ids of the stations of the survey
+     */
+    static int[] of(Survey surv, Stations stations) {
+        List<Shot> shots = surv.getShots();
+        int[] ids = new int[shots.size() * 2];
+        int n = 0;
+        ShotTable table = surv.getShotTable();
+        if (table != null && table.getStations() == stations) {
+            // data reduction. It doesn't matter if the connection is from or to station
+            for (int row = 0; row < table.size(); row++) {
+                ids[n++] = table.getFrom(row);
+                ids[n++] = table.getTo(row);
+            }
+            return unique(ids, n);
+        }
+        for (Shot shot : shots) {
+            // data reduction. It doesn't matter if the connection is from or to station
+            if (shot.getStations() == stations) {
+                ids[n++] = shot.getFromId();
+                ids[n++] = shot.getToId();
+            } else {
+                ids[n++] = stations.intern(shot.getFrom());
+                ids[n++] = stations.intern(shot.getTo());
+            }
+        }
+        return unique(ids, n);
+    }
+
+    private static int[] unique(int[] ids, int length) {
+        Arrays.sort(ids, 0, length);
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || ids[n - 1] != ids[i]) {
+                ids[n++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+/**
+ * Disjoint sets of the numbers 0 to size - 1, union by size with path
+ * halving.
+ *
+ * @author roger
+ */
+final class UnionFind {
+
+    private final int[] parent;
+    private final int[] size;
+
+    UnionFind(int count) {
+        parent = new int[count];
+        size = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return false if both were in the same set already
+     */
+    boolean union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return false;
+        }
+        if (size[ra] < size[rb]) {
+            int tmp = ra;
+            ra = rb;
+            rb = tmp;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        return true;
+    }
+}
@@ -17,6 +17,7 @@
 package de.r_schuster.compass2therion.parser;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 
@@ -26,9 +27,21 @@ import java.math.RoundingMode;
  */
 public abstract class AbstractSurveyParser implements SurveyParser {
 
+    /**
+     * A converted value which cannot be given in hundredths.
+     */
+    protected static final long NOT_HUNDREDTHS = Long.MIN_VALUE + 2;
+
     private static final BigDecimal TO_GRADIANS = BigDecimal.valueOf(400.00).divide(BigDecimal.valueOf(360.00), MathContext.DECIMAL32);
     private static final BigDecimal TO_METRES = BigDecimal.valueOf(0.3048);
 
+    // the factors above as unscaled values for fixed point numbers in hundredths
+    private static final long TO_GRADIANS_UNSCALED = TO_GRADIANS.unscaledValue().longValueExact();
+    private static final long TO_GRADIANS_DIVISOR = pow10(TO_GRADIANS.scale());
+    private static final long TO_METRES_UNSCALED = TO_METRES.unscaledValue().longValueExact();
+    private static final int TO_METRES_SCALE = TO_METRES.scale();
+    private static final int TO_METRES_PRECISION = MathContext.DECIMAL32.getPrecision();
+
     protected BigDecimal degreeToGradians(BigDecimal degree) {
         return degree.multiply(TO_GRADIANS).setScale(2, RoundingMode.HALF_UP);
     }
@@ -43,4 +56,85 @@ public abstract class AbstractSurveyParser implements SurveyParser {
         return feet.multiply(TO_METRES, MathContext.DECIMAL32).setScale(2, RoundingMode.HALF_UP);
     }
 
+    /*
+    The following variants work on fixed point numbers in hundredths as read by
+    the parser. They give exactly the same results as their BigDecimal
+    counterparts with a scale of two. A result which does not fit into a long
+    is returned as NOT_HUNDREDTHS, the BigDecimal variant gives the value then.
+     */
+    protected long degreeToGradians(long degree) {
+        if (Math.abs(degree) > Long.MAX_VALUE / TO_GRADIANS_UNSCALED) {
+            return NOT_HUNDREDTHS;
+        }
+        return roundHalfUp(degree * TO_GRADIANS_UNSCALED, TO_GRADIANS_DIVISOR);
+    }
+
+    /**
+     * @return the percent value in hundredths or {@link #NOT_HUNDREDTHS} if it
+     * is too big, like for a vertical shot. The BigDecimal variant gives the
+     * value then.
+     */
+    protected long degreeToPercent(long degree) {
+        double percent = Math.tan(Math.toRadians(degree / 100.0)) * 100;
+        // rarely used, therefore the rounding is left to BigDecimal
+        BigInteger hundredths = BigDecimal.valueOf(percent).setScale(2, RoundingMode.HALF_UP).unscaledValue();
+        return hundredths.bitLength() < 63 ? hundredths.longValue() : NOT_HUNDREDTHS;
+    }
+
+    protected long decimalFeetToMetres(long feet) {
+        if (Math.abs(feet) > Long.MAX_VALUE / TO_METRES_UNSCALED) {
+            return NOT_HUNDREDTHS;
+        }
+        long metres = feet * TO_METRES_UNSCALED;
+        int scale = 2 + TO_METRES_SCALE;
+
+        // MathContext.DECIMAL32
+        int drop = digits(metres) - TO_METRES_PRECISION;
+        if (drop > 0) {
+            metres = roundHalfEven(metres, pow10(drop));
+            scale -= drop;
+        }
+
+        if (scale > 2) {
+            return roundHalfUp(metres, pow10(scale - 2));
+        }
+        return metres * pow10(2 - scale);
+    }
+
+    private static long roundHalfUp(long value, long divisor) {
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor);
+        if (remainder * 2 >= divisor) {
+            quotient += Long.signum(value);
+        }
+        return quotient;
+    }
+
+    private static long roundHalfEven(long value, long divisor) {
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor) * 2;
+        if (remainder > divisor || (remainder == divisor && (quotient & 1) != 0)) {
+            quotient += Long.signum(value);
+        }
+        return quotient;
+    }
+
+    private static int digits(long value) {
+        long abs = Math.abs(value);
+        int digits = 1;
+        while (abs >= 10) {
+            abs /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
 }
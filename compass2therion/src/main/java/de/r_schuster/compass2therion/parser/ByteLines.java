@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Reads lines directly from the bytes of a survey file. Line terminators,
+ * FORM_FEED, SUB, whitespace and numbers are plain ASCII, so in an ASCII
+ * compatible charset like Cp1252 they can be found without decoding. Each line
+ * is handed out as a reused {@link CharSequence} view on the bytes and is only
+ * decoded to a String for values that go into the data model.
+ *
+ * Line terminators are the same as for
+ * {@link java.io.BufferedReader#readLine()}: line feed, carriage return or
+ * carriage return followed by line feed.
+ *
+ * @author roger
+ */
+final class ByteLines implements LineReader {
+
+    private final ByteBuffer buffer;
+    private final Line line;
+    private final int limit;
+    private int position;
+
+    ByteLines(ByteBuffer buffer, Charset charset) {
+        this.buffer = buffer;
+        this.line = new Line(buffer, charset);
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Finds the end of the survey starting at the given offset without looking
+     * at its content.
+     *
+     * @param from offset of the first line of a survey
+     * @return offset right behind the next line consisting of a FORM_FEED
+     * only, or the limit if there is none
+     */
+    static int endOfSurvey(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\f'
+                    && (i == from || isTerminator(buffer.get(i - 1)))
+                    && (i + 1 == limit || isTerminator(buffer.get(i + 1)))) {
+                return nextLine(buffer, i, limit);
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * @return offset of the line following the one at the given offset
+     */
+    static int nextLine(ByteBuffer buffer, int from, int limit) {
+        int i = from;
+        while (i < limit && !isTerminator(buffer.get(i))) {
+            i++;
+        }
+        if (i < limit && buffer.get(i) == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n') {
+            i++;
+        }
+        return Math.min(i + 1, limit);
+    }
+
+    /**
+     * @param to offset of the beginning of a line
+     * @return number of lines between the offsets
+     */
+    static int countLines(ByteBuffer buffer, int from, int to) {
+        int lines = 0;
+        int i = from;
+        while (i < to) {
+            i = nextLine(buffer, i, to);
+            lines++;
+        }
+        return lines;
+    }
+
+    private static boolean isTerminator(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * @return offset of the next line
+     */
+    int position() {
+        return position;
+    }
+
+    @Override
+    public CharSequence readLine() {
+        if (position >= limit) {
+            return null;
+        }
+
+        int start = position;
+        int end = start;
+        while (end < limit && !isTerminator(buffer.get(end))) {
+            end++;
+        }
+        line.set(start, end);
+        position = nextLine(buffer, end, limit);
+
+        return line;
+    }
+
+    /**
+     * A line as view on the underlying bytes.
+     */
+    static final class Line implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final Charset charset;
+        private byte[] bytes = new byte[128];
+        private int start;
+        private int end;
+
+        Line(ByteBuffer buffer, Charset charset) {
+            this.buffer = buffer;
+            this.charset = charset;
+        }
+
+        void set(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        /**
+         * Bytes above 127 are returned unmapped. They never take part in
+         * parsing decisions, use {@link #toString()} for real characters.
+         */
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return decode(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return decode(start, end);
+        }
+
+        private String decode(int from, int to) {
+            int len = to - from;
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + from, len, charset);
+            }
+            if (bytes.length < len) {
+                bytes = new byte[len];
+            }
+            for (int i = 0; i < len; i++) {
+                bytes[i] = buffer.get(from + i);
+            }
+            return new String(bytes, 0, len, charset);
+        }
+    }
+}
@@ -16,16 +16,13 @@
  */
 package de.r_schuster.compass2therion.parser;
 
+import de.r_schuster.compass2therion.charsets.Charsets;
 import de.r_schuster.compass2therion.exceptions.SurveyException;
 import de.r_schuster.compass2therion.networking.Networking;
-import de.r_schuster.compass2therion.data.AzimutUnits;
 import de.r_schuster.compass2therion.data.Cave;
-import de.r_schuster.compass2therion.data.Dimensions;
-import de.r_schuster.compass2therion.data.DimensionsAssociations;
-import de.r_schuster.compass2therion.data.InclinationUnits;
-import de.r_schuster.compass2therion.data.LengthUnits;
 import de.r_schuster.compass2therion.data.Shot;
-import de.r_schuster.compass2therion.data.ShotItems;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Stations;
 import de.r_schuster.compass2therion.data.Survey;
 import de.r_schuster.compass2therion.data.SurveyDate;
 
@@ -33,11 +30,32 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -48,71 +66,506 @@ public class CompassParser extends AbstractSurveyParser {
 
     private static final Logger LOGGER = Logger.getLogger(CompassParser.class.getName());
 
-    private static final String FORM_FEED = "\u000C";
-    private static final String SUB = "\u001A";
+    private static final char FORM_FEED = '\u000C';
+    private static final char SUB = '\u001A';
     private static final String SURVEY_NAME_MATCH = "SURVEY NAME:";
     private static final String SURVEY_DATE_MATCH = "SURVEY DATE:";
     private static final String SURVEY_COMMENT_MATCH = "COMMENT:"; // comment is optional in COMPASS
     private static final String DECLINATION_MATCH = "DECLINATION:";
     private static final String FORMAT_MATCH = "FORMAT:"; // optional in Compass
     private static final String CORRECTIONS_MATCH = "CORRECTIONS:"; // optional in Compass
-    private static final BigDecimal HUNDRED_EIGHTY = new BigDecimal("180.00");
-    private static final BigDecimal NINE_NINE_NINE = new BigDecimal("-999.00");
+    // numbers in shot lines are handled as hundredths
+    private static final long HUNDRED_EIGHTY = 18000;
+    private static final long NINE_NINE_NINE = -99900;
+    private static final long MISSING = Long.MIN_VALUE;
+    private static final ShotTable.Column[] COLUMNS = ShotTable.Column.values();
+    // the number columns of a shot line from the third one on
+    private static final ShotTable.Column[] LINE_COLUMNS = {ShotTable.Column.LENGTH, ShotTable.Column.AZIMUT,
+        ShotTable.Column.INCLINATION, ShotTable.Column.LEFT, ShotTable.Column.UP, ShotTable.Column.DOWN,
+        ShotTable.Column.RIGHT, ShotTable.Column.REVERSE_AZIMUT, ShotTable.Column.REVERSE_INCLINATION};
+    private static final ShotTable.Column[] DIMENSIONS = {ShotTable.Column.LEFT, ShotTable.Column.UP,
+        ShotTable.Column.DOWN, ShotTable.Column.RIGHT};
+
+    private final boolean parallel;
+
+    public CompassParser() {
+        this(false);
+    }
+
+    /**
+     * @param parallel parse the surveys of a file in parallel. This is only
+     * done when the file is read from bytes, InputStreams are always read
+     * sequentially.
+     */
+    public CompassParser(boolean parallel) {
+        this.parallel = parallel;
+    }
 
     @Override
     public Cave parse(String caveName, InputStream is, Charset charset, Networking networking) throws IOException {
         BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset));
+        Cave cave = readCave(caveName, reader::readLine);
 
-        Cave cave = new Cave(caveName);
-        Survey survey = new Survey();
+        networking.networking(cave); // establishing connections between surveys
+
+        return cave;
+    }
+
+    @Override
+    public Cave parse(String caveName, Path path, Charset charset, Networking networking) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(caveName, channel, charset, networking);
+        }
+    }
+
+    /**
+     * Parses a survey file by mapping it into memory.
+     */
+    public Cave parse(String caveName, FileChannel channel, Charset charset, Networking networking) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            // too big for a single mapping
+            return parse(caveName, Channels.newInputStream(channel.position(0)), charset, networking);
+        }
+        return parse(caveName, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), charset, networking);
+    }
 
-        String line = reader.readLine();
-        int lno = 1;
+    /**
+     * Parses a survey file from the remaining bytes of the buffer. With an
+     * ASCII compatible charset like Cp1252 lines and numbers are read directly
+     * from the bytes and only names and texts are decoded to Strings.
+     */
+    public Cave parse(String caveName, ByteBuffer buffer, Charset charset, Networking networking) throws IOException {
+        if (!Charsets.isAsciiCompatible(charset)) {
+            BufferedReader reader = new BufferedReader(new StringReader(charset.decode(buffer.duplicate()).toString()));
+            return parse(caveName, reader::readLine, networking);
+        }
+
+        Cave cave;
+        if (parallel) {
+            cave = readCaveParallel(caveName, buffer, charset);
+        } else {
+            cave = readCave(caveName, new ByteLines(buffer, charset));
+        }
+
+        networking.networking(cave); // establishing connections between surveys
+
+        return cave;
+    }
+
+    @Override
+    public Stream<Survey> surveys(InputStream is, Charset charset) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset));
+        return StreamSupport.stream(new LineSpliterator(reader::readLine), false);
+    }
+
+    @Override
+    public Stream<Survey> surveys(Path path, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                // too big for a single mapping, the stream is closed with the returned stream
+                InputStream is = Files.newInputStream(path);
+                return surveys(is, charset).onClose(() -> closeQuietly(is));
+            }
+            // the mapping stays valid after the channel is closed
+            return surveys(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), charset);
+        }
+    }
+
+    /**
+     * Lazily reads the surveys from the remaining bytes of the buffer. The
+     * stream can be split at survey boundaries and be used in parallel.
+     */
+    public Stream<Survey> surveys(ByteBuffer buffer, Charset charset) {
+        if (!Charsets.isAsciiCompatible(charset)) {
+            BufferedReader reader = new BufferedReader(new StringReader(charset.decode(buffer.duplicate()).toString()));
+            return StreamSupport.stream(new LineSpliterator(reader::readLine), false);
+        }
+        return StreamSupport.stream(new SurveySpliterator(buffer, buffer.position(), buffer.limit(), charset), false);
+    }
+
+    /**
+     * Builds an index of the surveys in the remaining bytes of the buffer.
+     * Only the header lines of the surveys are parsed, shot lines are just
+     * counted.
+     *
+     * @param charset an ASCII compatible charset like Cp1252
+     */
+    public SurveyIndex index(ByteBuffer buffer, Charset charset) {
+        if (!Charsets.isAsciiCompatible(charset)) {
+            throw new SurveyException("Charset " + charset + " is not supported for indexing survey files!");
+        }
+
+        SurveyIndex index = new SurveyIndex(buffer, charset);
+        ByteLines reader = new ByteLines(buffer, charset);
+        SurveyReader surveyReader = new SurveyReader(new Stations(), true);
+        int start = reader.position();
+        int firstLine = 1;
         int pos = 0;
 
         try {
+            CharSequence line = reader.readLine();
             while (line != null) {
                 pos++;
-                // the first line of a survey contains the cave name
-                if (lno == 1) {
-                    survey.setCaveName(line.trim());
-                } // second line: survey name
-                else if (lno == 2) {
-                    parseSurveyName(survey, line);
-                } // third line: Survey date and comment
-                else if (lno == 3) {
-                    parseSurveyDateAndComment(survey, line);
-                } // fourth line: nothing
-                // fifth line: survey team
-                else if (lno == 5) {
-                    parseCavers(survey, line);
-                } // sixth line: Declination, format, corrections
-                else if (lno == 6) {
-                    parseDeclinationAndFormat(survey, line);
-                } // 10ff lines: Survey data
-                else if (lno >= 10 && !FORM_FEED.equals(line) && !SUB.equals(line)) {
-                    parseShot(survey, line);
+                Survey survey = surveyReader.read(line);
+                if (survey != null) {
+                    index.add(new SurveyIndex.Entry(survey, start, reader.position() - start, firstLine, surveyReader.shots));
+                    start = reader.position();
+                    firstLine = pos + 1;
                 }
+                line = reader.readLine();
+            }
+        } catch (Exception e) {
+            throw new SurveyException("Error while reading line " + pos + " of survey file!", e);
+        }
 
-                // End of current survey
-                if (FORM_FEED.equals(line)) {
-                    cave.addSurvey(survey);
-                    survey = new Survey();
-                    lno = 0;
+        return index;
+    }
+
+    /**
+     * Parses only the given surveys of an indexed file.
+     *
+     * @throws SurveyException if a survey is not part of the index
+     */
+    public Cave parse(String caveName, SurveyIndex index, Collection<String> surveyNames, Networking networking) {
+        for (String name : surveyNames) {
+            if (index.get(name) == null) {
+                throw new SurveyException("Survey " + name + " not found in survey file!");
+            }
+        }
+
+        Cave cave = new Cave(caveName);
+        for (SurveyIndex.Entry entry : index.getEntries()) {
+            if (!surveyNames.contains(entry.getSurvey().getName())) {
+                continue;
+            }
+            SurveyBlock block = new SurveyBlock(index.getBuffer(), entry.getOffset(),
+                    entry.getOffset() + entry.getLength(), index.getCharset()).call();
+            if (block.error != null) {
+                int pos = entry.getFirstLine() - 1 + block.lines;
+                throw new SurveyException("Error while reading line " + pos + " of survey file!", block.error);
+            }
+            cave.addSurvey(block.survey);
+        }
+
+        networking.networking(cave); // establishing connections between surveys
+
+        return cave;
+    }
+
+    @Override
+    public Cave parse(String caveName, Path path, Charset charset, Collection<String> surveyNames, Networking networking) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!Charsets.isAsciiCompatible(charset) || channel.size() > Integer.MAX_VALUE) {
+                try (Stream<Survey> surveys = surveys(path, charset)) {
+                    return SurveyParser.select(caveName, surveys, surveyNames, networking);
                 }
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(caveName, index(buffer, charset), surveyNames, networking);
+        }
+    }
+
+    private static void closeQuietly(InputStream is) {
+        try {
+            is.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Cave parse(String caveName, LineReader reader, Networking networking) throws IOException {
+        Cave cave = readCave(caveName, reader);
 
-                lno++;
+        networking.networking(cave); // establishing connections between surveys
+
+        return cave;
+    }
+
+    private Cave readCave(String caveName, LineReader reader) throws IOException {
+        Cave cave = new Cave(caveName);
+        SurveyReader surveyReader = new SurveyReader(cave.getStations(), false);
+
+        CharSequence line = reader.readLine();
+        int pos = 0;
+
+        try {
+            while (line != null) {
+                pos++;
+                Survey survey = surveyReader.read(line);
+                if (survey != null) {
+                    cave.addSurvey(survey);
+                }
                 line = reader.readLine();
             }
         }  catch (Exception e) {
             throw new SurveyException("Error while reading line " + pos + " of survey file!", e);
         }
 
-        networking.networking(cave); // establishing connections between surveys
+        return cave;
+    }
+
+    /*
+    The surveys of a file are independent of each other and separated by
+    FORM_FEED lines. A quick scan finds those lines, then the surveys are
+    parsed in the fork-join pool and added to the cave in their original order.
+     */
+    private Cave readCaveParallel(String caveName, ByteBuffer buffer, Charset charset) {
+        List<SurveyBlock> blocks = new ArrayList<>();
+        int start = buffer.position();
+        while (start < buffer.limit()) {
+            int end = ByteLines.endOfSurvey(buffer, start, buffer.limit());
+            blocks.add(new SurveyBlock(buffer, start, end, charset));
+            start = end;
+        }
+
+        List<Future<SurveyBlock>> results = ForkJoinPool.commonPool().invokeAll(blocks);
+
+        Cave cave = new Cave(caveName);
+        int pos = 0;
+        for (Future<SurveyBlock> result : results) {
+            SurveyBlock block;
+            try {
+                block = result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SurveyException("Interrupted while reading survey file!", e);
+            } catch (ExecutionException e) {
+                throw new SurveyException("Error while reading survey file!", e.getCause());
+            }
+
+            // line numbers are counted per block
+            pos += block.lines;
+            if (block.error != null) {
+                throw new SurveyException("Error while reading line " + pos + " of survey file!", block.error);
+            }
+            if (block.survey != null) {
+                cave.addSurvey(block.survey);
+            }
+        }
 
         return cave;
     }
 
+    /**
+     * Reads the lines of one survey after the other. A survey is complete when
+     * its FORM_FEED line is reached.
+     */
+    private final class SurveyReader {
+
+        private final ShotTokenizer tokenizer = new ShotTokenizer();
+        private final ShotValues values = new ShotValues();
+        private final boolean headerOnly;
+        private final Stations stations;
+        private Survey survey;
+        private ShotDecoder decoder = ShotDecoder.DEFAULT;
+        private int lno = 1;
+        private int shots;
+
+        /**
+         * @param stations table for the station names of all surveys
+         * @param headerOnly skip the shot lines and only count them
+         */
+        SurveyReader(Stations stations, boolean headerOnly) {
+            this.stations = stations;
+            this.headerOnly = headerOnly;
+            this.survey = new Survey(new ShotTable(stations));
+        }
+
+        /**
+         * @return the survey if it is completed by this line, otherwise null
+         */
+        Survey read(CharSequence line) {
+            // the first line of a survey contains the cave name
+            if (lno == 1) {
+                shots = 0;
+                decoder = ShotDecoder.DEFAULT;
+                survey.setCaveName(line.toString().trim());
+            } // second line: survey name
+            else if (lno == 2) {
+                parseSurveyName(survey, line.toString());
+            } // third line: Survey date and comment
+            else if (lno == 3) {
+                parseSurveyDateAndComment(survey, line.toString());
+            } // fourth line: nothing
+            // fifth line: survey team
+            else if (lno == 5) {
+                parseCavers(survey, line.toString());
+            } // sixth line: Declination, format, corrections
+            else if (lno == 6) {
+                decoder = parseDeclinationAndFormat(survey, line.toString());
+            } // 10ff lines: Survey data
+            else if (lno >= 10 && !isLine(line, FORM_FEED) && !isLine(line, SUB)) {
+                shots++;
+                if (!headerOnly) {
+                    parseShot(survey, decoder, line, tokenizer, values);
+                }
+            }
+
+            Survey completed = null;
+
+            // End of current survey
+            if (isLine(line, FORM_FEED)) {
+                completed = survey;
+                survey = new Survey(new ShotTable(stations));
+                lno = 0;
+            }
+
+            lno++;
+            return completed;
+        }
+    }
+
+    /**
+     * Hands out the surveys of a line based input one after the other.
+     */
+    private final class LineSpliterator extends Spliterators.AbstractSpliterator<Survey> {
+
+        private final LineReader reader;
+        private final SurveyReader surveyReader = new SurveyReader(new Stations(), false);
+        private int pos = 0;
+
+        LineSpliterator(LineReader reader) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Survey> action) {
+            try {
+                CharSequence line = reader.readLine();
+                while (line != null) {
+                    pos++;
+                    Survey survey = surveyReader.read(line);
+                    if (survey != null) {
+                        action.accept(survey);
+                        return true;
+                    }
+                    line = reader.readLine();
+                }
+            } catch (Exception e) {
+                throw new SurveyException("Error while reading line " + pos + " of survey file!", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Hands out the surveys of a range of bytes one after the other. The range
+     * is split at survey boundaries for parallel streams.
+     */
+    private final class SurveySpliterator implements Spliterator<Survey> {
+
+        // smaller ranges are not worth splitting
+        private static final int MIN_SPLIT = 1 << 16;
+
+        private final ByteBuffer buffer;
+        private final Charset charset;
+        private final int origin;
+        private final int limit;
+        private int position;
+
+        SurveySpliterator(ByteBuffer buffer, int position, int limit, Charset charset) {
+            this(buffer, buffer.position(), position, limit, charset);
+        }
+
+        private SurveySpliterator(ByteBuffer buffer, int origin, int position, int limit, Charset charset) {
+            this.buffer = buffer;
+            this.origin = origin;
+            this.position = position;
+            this.limit = limit;
+            this.charset = charset;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Survey> action) {
+            while (position < limit) {
+                int end = ByteLines.endOfSurvey(buffer, position, limit);
+                SurveyBlock block = new SurveyBlock(buffer, position, end, charset).call();
+                if (block.error != null) {
+                    // line numbers are only counted if they are needed
+                    int pos = ByteLines.countLines(buffer, origin, position) + block.lines;
+                    throw new SurveyException("Error while reading line " + pos + " of survey file!", block.error);
+                }
+                position = end;
+                if (block.survey != null) {
+                    action.accept(block.survey);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Survey> trySplit() {
+            if (limit - position < MIN_SPLIT) {
+                return null;
+            }
+            int middle = ByteLines.nextLine(buffer, position + (limit - position) / 2, limit);
+            int split = ByteLines.endOfSurvey(buffer, middle, limit);
+            if (split >= limit) {
+                return null;
+            }
+            SurveySpliterator prefix = new SurveySpliterator(buffer, origin, position, split, charset);
+            position = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return limit - position; // bytes, not surveys
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * The bytes of one survey, parsed as task of its own.
+     */
+    private final class SurveyBlock implements Callable<SurveyBlock> {
+
+        private final ByteBuffer buffer;
+        private final Charset charset;
+        private Survey survey;
+        private int lines;
+        private Exception error;
+
+        SurveyBlock(ByteBuffer buffer, int start, int end, Charset charset) {
+            this.buffer = buffer.duplicate();
+            this.buffer.position(start).limit(end);
+            this.charset = charset;
+        }
+
+        @Override
+        public SurveyBlock call() {
+            ByteLines reader = new ByteLines(buffer, charset);
+            // each block has its own table, the cave takes the names over
+            SurveyReader surveyReader = new SurveyReader(new Stations(), false);
+            try {
+                CharSequence line = reader.readLine();
+                while (line != null) {
+                    lines++;
+                    Survey completed = surveyReader.read(line);
+                    if (completed != null) {
+                        survey = completed;
+                    }
+                    line = reader.readLine();
+                }
+            } catch (Exception e) {
+                error = e;
+            }
+            return this;
+        }
+    }
+
+    private static boolean isLine(CharSequence line, char c) {
+        return line.length() == 1 && line.charAt(0) == c;
+    }
+
     private void parseSurveyName(final Survey survey, final String line) {
         final int indexOf = line.indexOf(SURVEY_NAME_MATCH);
         String name = line.substring(indexOf + SURVEY_NAME_MATCH.length());
@@ -150,7 +603,7 @@ public class CompassParser extends AbstractSurveyParser {
         }
     }
 
-    private void parseDeclinationAndFormat(final Survey survey, final String line) {
+    private ShotDecoder parseDeclinationAndFormat(final Survey survey, final String line) {
         final int idx1 = line.indexOf(DECLINATION_MATCH);
         final int idx2 = line.indexOf(FORMAT_MATCH);
         final int idx3 = line.indexOf(CORRECTIONS_MATCH);
@@ -174,166 +627,77 @@ public class CompassParser extends AbstractSurveyParser {
             str = line.substring(idx2 + FORMAT_MATCH.length(), idx3).trim();
         }
 
-        if (str != null) {
-            char[] format = str.toCharArray(); // can be 11, 12, 13 or 15 elements
-
-            if (format.length < 11 || format.length > 15 || format.length == 14) {
-                throw new SurveyException("Format string invalid: " + str);
-            }
-
-            survey.setDimensionsAssociation(DimensionsAssociations.FROM); // default in older Compass versions
-
-            AzimutUnits azUn;
-            if (AzimutUnits.getByUnit(format[0]).equals(AzimutUnits.QUADS)) {
-                azUn = AzimutUnits.DEGREES; // workaround for quads (Brunton compass and similar devices)
-                LOGGER.log(Level.INFO, "Converting azimut in quads to degrees. Survey {0}", survey.getName());
-            } else {
-                azUn = AzimutUnits.getByUnit(format[0]);
-            }
-            survey.setAzimutUnit(azUn); // Azimut Unit
+        ShotDecoder decoder = str == null ? ShotDecoder.DEFAULT : ShotDecoder.forFormat(str);
+        if (decoder.quads) {
+            LOGGER.log(Level.INFO, "Converting azimut in quads to degrees. Survey {0}", survey.getName());
+        }
+        if (decoder.lengthInFeetAndInches) {
+            LOGGER.log(Level.INFO, "Converting length in feet and inches to decimal feet. Survey {0}", survey.getName());
+        }
+        if (decoder.dimensionsInFeetAndInches) {
+            LOGGER.log(Level.INFO, "Converting passage dimensions in feet and inches to decimal feet. Survey {0}", survey.getName());
+        }
+        if (decoder.inclinationInDegreesAndMinutes) {
+            LOGGER.log(Level.INFO, "Converting inclination in degrees and minutes to degrees. Survey {0}", survey.getName());
+        }
+        survey.setLayout(decoder.layout);
 
-            LengthUnits lenUn;
-            if (LengthUnits.getByUnit(format[1]).equals(LengthUnits.FEET_INCHES)) {
-                lenUn = LengthUnits.FEET_DECIMAL; // workaround for feet and inches
-                LOGGER.log(Level.INFO, "Converting length in feet and inches to decimal feet. Survey {0}", survey.getName());
-            } else {
-                lenUn = LengthUnits.getByUnit(format[1]);
-            }
-            survey.setLengthUnit(lenUn); // length unit
+        // TODO Corrections and Corrections2
 
-            LengthUnits dimUn;
-            if (LengthUnits.getByUnit(format[2]).equals(LengthUnits.FEET_INCHES)) {
-                dimUn = LengthUnits.FEET_DECIMAL; // workaround for feet and inches
-                LOGGER.log(Level.INFO, "Converting passage dimensions in feet and inches to decimal feet. Survey {0}", survey.getName());
-            } else {
-                dimUn = LengthUnits.getByUnit(format[2]);
-            }
-            survey.setDimensionUnit(dimUn); // dimension unit
+        return decoder;
+    }
 
-            InclinationUnits incUn;
-            if (InclinationUnits.getByUnit(format[3]).equals(InclinationUnits.DEGREES_MINUTES)) {
-                incUn = InclinationUnits.DEGREES; // workaround for degrees and minutes
-                LOGGER.log(Level.INFO, "Converting inclination in degrees and minutes to degrees. Survey {0}", survey.getName());
+    private void parseShot(final Survey survey, final ShotDecoder decoder, final CharSequence line, final ShotTokenizer tokenizer, final ShotValues values) {
+        tokenizer.reset(line);
+        values.clear();
+        final int count = tokenizer.count();
+
+        final String from = tokenizer.string(0);
+        final String to = count > 1 ? tokenizer.string(1) : null;
+        // if backsights enabled column 9 holds reverse azimut and column 10 reverse inclination
+        final int numbers = Math.min(count, decoder.reverse ? 11 : 9);
+        for (int i = 2; i < numbers; i++) {
+            ShotTable.Column column = LINE_COLUMNS[i - 2];
+            if (isDimension(column) && tokenizer.contains(i, '-')) {
+                LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Setting a LRUD value to zero.", new Object[]{survey.getName(), from, to});
+                values.setHundredths(column, ShotTable.PASSAGE);
             } else {
-                incUn = InclinationUnits.getByUnit(format[3]);
-            }
-            survey.setInclinationUnit(incUn); // inclination unit
-
-            survey.getDimensionsOrder().put(1, Dimensions.getByType(format[4])); // first passage dimension
-            survey.getDimensionsOrder().put(2, Dimensions.getByType(format[5])); // second passage dimension
-            survey.getDimensionsOrder().put(3, Dimensions.getByType(format[6])); // third passage dimension
-            survey.getDimensionsOrder().put(4, Dimensions.getByType(format[7])); // fourth passage dimension
-            survey.getShotItemsOrder().put(1, ShotItems.getByType(format[8])); // first shot item (length, azimut...)
-            survey.getShotItemsOrder().put(2, ShotItems.getByType(format[9])); // second shot item (length, azimut...)
-            survey.getShotItemsOrder().put(3, ShotItems.getByType(format[10])); // third shot item (length, azimut...)
-
-            if (format.length == 12 || format.length == 13) {
-                survey.setReverse(format[11] == 'B');
+                values.setHundredths(column, tokenizer.hundredths(i));
             }
-
-            if (format.length == 13) {
-                survey.setDimensionsAssociation(DimensionsAssociations.getByStation(format[12]));
-            }
-            if (format.length == 15) {
-                survey.getShotItemsOrder().put(4, ShotItems.getByType(format[11])); // fourth shot item (length, azimut...)
-                survey.getShotItemsOrder().put(5, ShotItems.getByType(format[12])); // fifth shot item (length, azimut...)
-                survey.setReverse(format[13] == 'B');
-                survey.setDimensionsAssociation(DimensionsAssociations.getByStation(format[14]));
+        }
+        // numbers with more than two decimals are taken like they are written
+        // and rounded only once by a conversion
+        if (tokenizer.rounded()) {
+            for (int i = 2; i < numbers; i++) {
+                ShotTable.Column column = LINE_COLUMNS[i - 2];
+                if (values.getHundredths(column) != ShotTable.PASSAGE) {
+                    values.setExact(column, tokenizer.exact(i));
+                }
             }
-
-        } else {
-            survey.setAzimutUnit(AzimutUnits.DEGREES); // Azimut Unit
-            survey.setLengthUnit(LengthUnits.FEET_DECIMAL); // length unit
-            survey.setDimensionUnit(LengthUnits.FEET_DECIMAL); // dimension unit
-            survey.setInclinationUnit(InclinationUnits.DEGREES); // inclination unit
-            survey.getDimensionsOrder().put(1, Dimensions.LEFT); // first passage dimension
-            survey.getDimensionsOrder().put(2, Dimensions.UP); // second passage dimension
-            survey.getDimensionsOrder().put(3, Dimensions.DOWN); // third passage dimension
-            survey.getDimensionsOrder().put(4, Dimensions.RIGHT); // fourth passage dimension
-            survey.getShotItemsOrder().put(1, ShotItems.LENGTH); // first shot item (length, azimut...)
-            survey.getShotItemsOrder().put(2, ShotItems.AZIMUT); // second shot item (length, azimut...)
-            survey.getShotItemsOrder().put(3, ShotItems.INCLINATION); // third shot item (length, azimut...)
-            survey.setDimensionsAssociation(DimensionsAssociations.FROM);
-            survey.setReverse(false);
         }
 
-        // TODO Corrections and Corrections2
-    }
-
-    private void parseShot(final Survey survey, final String line) {
-        Shot shot = new Shot();
-
-        BigDecimal azimut = null;
-        BigDecimal azimutReverse = null;
-        BigDecimal inclination = null;
-        BigDecimal inclinationReverse = null;
         StringBuilder comments = new StringBuilder();
+        final int flags = decoder.flagsColumn;
+        // the next column may hold either survey flags or beginn of comment
+        // TODO flags are ignored so far
+        if (count > flags && !tokenizer.startsWith(flags, "#|")) {
+            comments.append(tokenizer.string(flags)).append(' ');
+        }
+        // all remaining columns hold the comment
+        for (int i = flags + 1; i < count; i++) {
+            comments.append(tokenizer.string(i)).append(' ');
+        }
 
-        String[] split = line.trim().split("\\s+");
-        for (int i = 0; i < split.length; i++) {
-            String s = split[i];
-            if (i == 0) {
-                shot.setFrom(s);
-            } else if (i == 1) {
-                shot.setTo(s);
-            } else if (i == 2) {
-                BigDecimal len = convertLen(survey, s);
-                shot.setLength(len);
-            } else if (i == 3) {
-                azimut = new BigDecimal(s);
-            } else if (i == 4) {
-                inclination = new BigDecimal(s);
-            } else if (i == 5) {
-                BigDecimal left = convertDim(survey, shot, s);
-                shot.setLeft(left);
-            } else if (i == 6) {
-                BigDecimal up = convertDim(survey, shot, s);
-                shot.setUp(up);
-            } else if (i == 7) {
-                BigDecimal down = convertDim(survey, shot, s);
-                shot.setDown(down);
-            } else if (i == 8) {
-                BigDecimal right = convertDim(survey, shot, s);
-                shot.setRight(right);
-            } // the following items are optional
-            // if backsights enabled... 
-            else if (survey.isReverse()) {
-                // column 9 holds reverse azimut
-                if (i == 9) {
-                    azimutReverse = new BigDecimal(s);
-                }
-                // column 10 holds reverse inclination
-                if (i == 10) {
-                    inclinationReverse = new BigDecimal(s);
-                }
-                // column 11 may hold either survey flags or beginn of comment
-                if (i == 11) {
-                    if (s.startsWith("#|")) {
-                        // TODO flags are ignored so far
-                    } else {
-                        comments.append(s).append(' ');
-                    }
-                }
-                // column 12ff may hold comment
-                if (i >= 12) {
-                    comments.append(s).append(' ');
-                }
-            } // if backsights are not enabled...
-            else if (!survey.isReverse()) {
-                // column 9 may hold either survey flags or beginn of comment
-                if (i == 9) {
-                    if (s.startsWith("#|")) {
-                        // TODO flags are ignored so far
-                    } else {
-                        comments.append(s).append(' ');
-                    }
-                }
-                // column 10ff may hold  comment
-                if (i >= 10) {
-                    comments.append(s).append(' ');
+        // default unit is decimal feet
+        if (decoder.lengthInMetres) {
+            toMetres(values, ShotTable.Column.LENGTH);
+        }
+        if (decoder.dimensionsInMetres) {
+            for (ShotTable.Column column : DIMENSIONS) {
+                if (values.getHundredths(column) != ShotTable.PASSAGE) {
+                    toMetres(values, column);
                 }
             }
-
         }
 
         /*
@@ -344,99 +708,216 @@ public class CompassParser extends AbstractSurveyParser {
         the existing value by 180 or 90 degrees and use the result as replacement
         for the missing value.
          */
-        if (survey.isReverse()) {
-            if (azimut != null && azimutReverse != null) {
-                if (azimut.setScale(2, RoundingMode.HALF_UP).compareTo(NINE_NINE_NINE) == 0) {
-                    azimut = flipAzimut(azimutReverse);
-                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping azimut.", new Object[]{survey.getName(), shot.getFrom(), shot.getTo()});
-                } else if (azimutReverse.setScale(2, RoundingMode.HALF_UP).compareTo(NINE_NINE_NINE) == 0) {
-                    azimutReverse = flipAzimut(azimut);
-                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping reverse azimut.", new Object[]{survey.getName(), shot.getFrom(), shot.getTo()});
+        if (decoder.reverse) {
+            if (values.isGiven(ShotTable.Column.AZIMUT) && values.isGiven(ShotTable.Column.REVERSE_AZIMUT)) {
+                if (values.getHundredths(ShotTable.Column.AZIMUT) == NINE_NINE_NINE) {
+                    flipAzimut(values, ShotTable.Column.REVERSE_AZIMUT, ShotTable.Column.AZIMUT);
+                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping azimut.", new Object[]{survey.getName(), from, to});
+                } else if (values.getHundredths(ShotTable.Column.REVERSE_AZIMUT) == NINE_NINE_NINE) {
+                    flipAzimut(values, ShotTable.Column.AZIMUT, ShotTable.Column.REVERSE_AZIMUT);
+                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping reverse azimut.", new Object[]{survey.getName(), from, to});
+                }
+                if (decoder.azimutInGrads) {
+                    toGradians(values, ShotTable.Column.REVERSE_AZIMUT);
                 }
-                shot.setReverseAzimut(convertAzimut(azimutReverse, survey));
+            } else {
+                values.setHundredths(ShotTable.Column.REVERSE_AZIMUT, MISSING);
             }
 
-            if (inclination != null && inclinationReverse != null) {
-                if (inclination.setScale(2, RoundingMode.HALF_UP).compareTo(NINE_NINE_NINE) == 0) {
-                    inclination = flipInc(inclinationReverse);
-                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping inclination.", new Object[]{survey.getName(), shot.getFrom(), shot.getTo()});
-                } else if (inclinationReverse.setScale(2, RoundingMode.HALF_UP).compareTo(NINE_NINE_NINE) == 0) {
-                    inclinationReverse = flipInc(inclination);
-                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping reverse inclination.", new Object[]{survey.getName(), shot.getFrom(), shot.getTo()});
+            if (values.isGiven(ShotTable.Column.INCLINATION) && values.isGiven(ShotTable.Column.REVERSE_INCLINATION)) {
+                if (values.getHundredths(ShotTable.Column.INCLINATION) == NINE_NINE_NINE) {
+                    flipInc(values, ShotTable.Column.REVERSE_INCLINATION, ShotTable.Column.INCLINATION);
+                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping inclination.", new Object[]{survey.getName(), from, to});
+                } else if (values.getHundredths(ShotTable.Column.REVERSE_INCLINATION) == NINE_NINE_NINE) {
+                    flipInc(values, ShotTable.Column.INCLINATION, ShotTable.Column.REVERSE_INCLINATION);
+                    LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Flipping reverse inclination.", new Object[]{survey.getName(), from, to});
                 }
-                shot.setReverseInclination(inclinationReverse);
+                // reverse inclination is kept in the unit of the file
+            } else {
+                values.setHundredths(ShotTable.Column.REVERSE_INCLINATION, MISSING);
             }
         }
 
-        shot.setAzimut(convertAzimut(azimut, survey));
-        shot.setInclination(convertInclination(inclination, survey));
+        // default unit is degrees
+        if (values.isGiven(ShotTable.Column.AZIMUT) && decoder.azimutInGrads) {
+            toGradians(values, ShotTable.Column.AZIMUT);
+        }
+        if (values.isGiven(ShotTable.Column.INCLINATION)) {
+            if (decoder.inclinationInGrads) {
+                toGradians(values, ShotTable.Column.INCLINATION);
+            } else if (decoder.inclinationInPercent) {
+                toPercent(values, ShotTable.Column.INCLINATION);
+            }
+        }
+
+        // like Survey.addShot the first shot between two stations wins
+        ShotTable table = survey.getShotTable();
+        int fromId = table.getStations().intern(from);
+        int toId = table.getStations().intern(to);
+        if (table.indexOf(fromId, toId) >= 0) {
+            Shot duplicate = new Shot(table.getStations());
+            duplicate.setFrom(from);
+            duplicate.setTo(to);
+            duplicate.setLength(values.getDecimal(ShotTable.Column.LENGTH));
+            duplicate.setAzimut(values.getDecimal(ShotTable.Column.AZIMUT));
+            duplicate.setInclination(values.getDecimal(ShotTable.Column.INCLINATION));
+            duplicate.setReverseAzimut(values.getDecimal(ShotTable.Column.REVERSE_AZIMUT));
+            duplicate.setReverseInclination(values.getDecimal(ShotTable.Column.REVERSE_INCLINATION));
+            duplicate.setLeft(values.getDecimal(ShotTable.Column.LEFT));
+            duplicate.setRight(values.getDecimal(ShotTable.Column.RIGHT));
+            duplicate.setUp(values.getDecimal(ShotTable.Column.UP));
+            duplicate.setDown(values.getDecimal(ShotTable.Column.DOWN));
+            if (comments.length() > 0) {
+                duplicate.setComment(comments.toString().trim());
+            }
+            survey.addDuplicateShot(duplicate);
+            LOGGER.log(Level.WARNING, "Survey {0}: Shot {1}-{2} is given more than once, only the first one is used.",
+                    new Object[]{survey.getName(), from, to});
+            return;
+        }
 
+        int row = table.add(fromId, toId);
+        values.store(table, row);
         if (comments.length() > 0) {
-            shot.setComment(comments.toString().trim());
+            table.setComment(row, comments.toString().trim());
         }
+    }
 
-        survey.addShot(shot);
+    /*
+    In Compass one can enter "P" for "Passage" instead of a LRUD value. 
+    For example if you have a survey station at a T-intersection with a passage 
+    opening to the left, you would type "P" in the "left" column of the Compass 
+    cave editor. Compass viewer needs this info for not drawing a wall where is
+    none. Other cave survey software does not know about this concept why the
+    negative number is replaced with zero.
+     */
+    private static boolean isDimension(ShotTable.Column column) {
+        return column == ShotTable.Column.LEFT || column == ShotTable.Column.UP
+                || column == ShotTable.Column.DOWN || column == ShotTable.Column.RIGHT;
     }
 
-    private BigDecimal flipInc(BigDecimal inc) {
-        return inc.negate();
+    /*
+    The conversions work in hundredths and take the BigDecimal variant for
+    exact values and for results which do not fit.
+     */
+    private void toMetres(ShotValues values, ShotTable.Column column) {
+        BigDecimal exact = values.getExact(column);
+        long metres = exact == null ? decimalFeetToMetres(values.getHundredths(column)) : NOT_HUNDREDTHS;
+        if (metres == NOT_HUNDREDTHS) {
+            values.setExact(column, decimalFeetToMetres(values.getDecimal(column)));
+        } else {
+            values.setHundredths(column, metres);
+        }
     }
 
-    private BigDecimal flipAzimut(BigDecimal az) {
-        BigDecimal res;
-        if (az.setScale(2, RoundingMode.HALF_UP).compareTo(HUNDRED_EIGHTY) > 0) {
-            res = az.subtract(HUNDRED_EIGHTY);
+    private void toGradians(ShotValues values, ShotTable.Column column) {
+        BigDecimal exact = values.getExact(column);
+        long gradians = exact == null ? degreeToGradians(values.getHundredths(column)) : NOT_HUNDREDTHS;
+        if (gradians == NOT_HUNDREDTHS) {
+            values.setExact(column, degreeToGradians(values.getDecimal(column)));
         } else {
-            res = HUNDRED_EIGHTY.add(az);
+            values.setHundredths(column, gradians);
         }
+    }
 
-        return res;
+    private void toPercent(ShotValues values, ShotTable.Column column) {
+        BigDecimal exact = values.getExact(column);
+        // a vertical shot has no percent value in hundredths
+        long percent = exact == null ? degreeToPercent(values.getHundredths(column)) : NOT_HUNDREDTHS;
+        if (percent == NOT_HUNDREDTHS) {
+            values.setExact(column, degreeToPercent(values.getDecimal(column)));
+        } else {
+            values.setHundredths(column, percent);
+        }
     }
 
-    private BigDecimal convertAzimut(BigDecimal azimut, final Survey survey) {
-        // default unit is degrees.
-        if (AzimutUnits.GRADS.equals(survey.getAzimutUnit())) {
-            azimut = degreeToGradians(azimut);
+    private void flipAzimut(ShotValues values, ShotTable.Column source, ShotTable.Column target) {
+        BigDecimal exact = values.getExact(source);
+        if (exact == null) {
+            values.setHundredths(target, flipAzimut(values.getHundredths(source)));
+        } else {
+            BigDecimal hundredEighty = BigDecimal.valueOf(HUNDRED_EIGHTY, 2);
+            values.setExact(target, values.getHundredths(source) > HUNDRED_EIGHTY ? exact.subtract(hundredEighty) : hundredEighty.add(exact));
         }
-        return azimut;
     }
 
-    private BigDecimal convertInclination(BigDecimal inc, final Survey survey) {
-        // default unit is degrees.
-        if (InclinationUnits.GRADS.equals(survey.getInclinationUnit())) {
-            inc = degreeToGradians(inc);
-        } else if (InclinationUnits.PERCENT.equals(survey.getInclinationUnit())) {
-            inc = degreeToPercent(inc);
+    private void flipInc(ShotValues values, ShotTable.Column source, ShotTable.Column target) {
+        BigDecimal exact = values.getExact(source);
+        if (exact == null) {
+            values.setHundredths(target, flipInc(values.getHundredths(source)));
+        } else {
+            values.setExact(target, exact.negate());
         }
-        return inc;
     }
 
-    private BigDecimal convertLen(Survey survey, String s) {
-        BigDecimal len = new BigDecimal(s); // default unit is decimal feet
-        if (LengthUnits.METRES.equals(survey.getLengthUnit())) {
-            len = decimalFeetToMetres(len);
+    private long flipInc(long inc) {
+        return -inc;
+    }
+
+    private long flipAzimut(long az) {
+        long res;
+        if (az > HUNDRED_EIGHTY) {
+            res = az - HUNDRED_EIGHTY;
+        } else {
+            res = HUNDRED_EIGHTY + az;
         }
-        return len;
+
+        return res;
     }
 
-    /*
-    In Compass one can enter "P" for "Passage" instead of a LRUD value. 
-    For example if you have a survey station at a T-intersection with a passage 
-    opening to the left, you would type "P" in the "left" column of the Compass 
-    cave editor. Compass viewer needs this info for not drawing a wall where is
-    none. Other cave survey software does not know about this concept why the
-    negative number is replaced with zero.
+    /**
+     * The numbers of a shot line, in hundredths as long as they are given in
+     * hundredths and otherwise as BigDecimal. Reused from line to line.
      */
-    private BigDecimal convertDim(Survey survey, Shot shot, String s) {
-        if (s.contains("-")) {
-            LOGGER.log(Level.INFO, "Survey {0}, Shot {1}-{2}: Setting a LRUD value to zero.", new Object[]{survey.getName(), shot.getFrom(), shot.getTo()});
-            return BigDecimal.ZERO;
-        } else {
-            BigDecimal len = new BigDecimal(s); // default unit is decimal feet
-            if (LengthUnits.METRES.equals(survey.getDimensionUnit())) {
-                len = decimalFeetToMetres(len);
+    private static final class ShotValues {
+
+        private final long[] hundredths = new long[COLUMNS.length];
+        private final BigDecimal[] exact = new BigDecimal[COLUMNS.length];
+
+        void clear() {
+            Arrays.fill(hundredths, MISSING);
+            Arrays.fill(exact, null);
+        }
+
+        boolean isGiven(ShotTable.Column column) {
+            return hundredths[column.ordinal()] != MISSING || exact[column.ordinal()] != null;
+        }
+
+        /**
+         * @return the value in hundredths, rounded half up if it is exact
+         */
+        long getHundredths(ShotTable.Column column) {
+            return hundredths[column.ordinal()];
+        }
+
+        void setHundredths(ShotTable.Column column, long value) {
+            hundredths[column.ordinal()] = value;
+            exact[column.ordinal()] = null;
+        }
+
+        BigDecimal getExact(ShotTable.Column column) {
+            return exact[column.ordinal()];
+        }
+
+        void setExact(ShotTable.Column column, BigDecimal value) {
+            hundredths[column.ordinal()] = value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+            exact[column.ordinal()] = value;
+        }
+
+        BigDecimal getDecimal(ShotTable.Column column) {
+            BigDecimal value = exact[column.ordinal()];
+            return value != null ? value : ShotTable.toDecimal(hundredths[column.ordinal()]);
+        }
+
+        void store(ShotTable table, int row) {
+            for (ShotTable.Column column : COLUMNS) {
+                BigDecimal value = exact[column.ordinal()];
+                if (value != null) {
+                    table.setDecimal(column, row, value);
+                } else {
+                    table.setHundredths(column, row, hundredths[column.ordinal()]);
+                }
             }
-            return len;
         }
     }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import java.io.IOException;
+
+/**
+ * Source of the lines of a survey file. Works like
+ * {@link java.io.BufferedReader#readLine()} but may hand out a view which is
+ * only valid until the next call.
+ *
+ * @author roger
+ */
+interface LineReader {
+
+    /**
+     * @return the next line without line terminator or null at the end of
+     * input
+     */
+    CharSequence readLine() throws IOException;
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import de.r_schuster.compass2therion.data.AzimutUnits;
+import de.r_schuster.compass2therion.data.Dimensions;
+import de.r_schuster.compass2therion.data.DimensionsAssociations;
+import de.r_schuster.compass2therion.data.InclinationUnits;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.ShotItems;
+import de.r_schuster.compass2therion.data.ShotLayout;
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A Compass FORMAT string compiled into the layout of its surveys and the
+ * conversions needed for their shot lines. A survey file usually uses only a
+ * handful of formats, so each one is compiled once and shared by all surveys.
+ *
+ * @author roger
+ */
+final class ShotDecoder {
+
+    private static final ConcurrentMap<String, ShotDecoder> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Used for surveys without FORMAT.
+     */
+    static final ShotDecoder DEFAULT = new ShotDecoder(new ShotLayout(AzimutUnits.DEGREES, LengthUnits.FEET_DECIMAL,
+            LengthUnits.FEET_DECIMAL, InclinationUnits.DEGREES,
+            new Dimensions[]{Dimensions.LEFT, Dimensions.UP, Dimensions.DOWN, Dimensions.RIGHT},
+            new ShotItems[]{ShotItems.LENGTH, ShotItems.AZIMUT, ShotItems.INCLINATION},
+            false, DimensionsAssociations.FROM), false, false, false, false);
+
+    final ShotLayout layout;
+    final boolean lengthInMetres;
+    final boolean dimensionsInMetres;
+    final boolean azimutInGrads;
+    final boolean inclinationInGrads;
+    final boolean inclinationInPercent;
+    final boolean reverse;
+    // first column after the mandatory ones and the backsights
+    final int flagsColumn;
+
+    // units which are read as a related unit
+    final boolean quads;
+    final boolean lengthInFeetAndInches;
+    final boolean dimensionsInFeetAndInches;
+    final boolean inclinationInDegreesAndMinutes;
+
+    private ShotDecoder(ShotLayout layout, boolean quads, boolean lengthInFeetAndInches,
+            boolean dimensionsInFeetAndInches, boolean inclinationInDegreesAndMinutes) {
+        this.layout = layout;
+        this.lengthInMetres = layout.getLengthUnit() == LengthUnits.METRES;
+        this.dimensionsInMetres = layout.getDimensionUnit() == LengthUnits.METRES;
+        this.azimutInGrads = layout.getAzimutUnit() == AzimutUnits.GRADS;
+        this.inclinationInGrads = layout.getInclinationUnit() == InclinationUnits.GRADS;
+        this.inclinationInPercent = layout.getInclinationUnit() == InclinationUnits.PERCENT;
+        this.reverse = layout.isReverse();
+        this.flagsColumn = reverse ? 11 : 9;
+        this.quads = quads;
+        this.lengthInFeetAndInches = lengthInFeetAndInches;
+        this.dimensionsInFeetAndInches = dimensionsInFeetAndInches;
+        this.inclinationInDegreesAndMinutes = inclinationInDegreesAndMinutes;
+    }
+
+    /**
+     * @param format the FORMAT of a survey, 11, 12, 13 or 15 characters
+     * @throws SurveyException if the format is invalid
+     */
+    static ShotDecoder forFormat(String format) {
+        return CACHE.computeIfAbsent(format, ShotDecoder::compile);
+    }
+
+    private static ShotDecoder compile(String str) {
+        char[] format = str.toCharArray(); // can be 11, 12, 13 or 15 elements
+
+        if (format.length < 11 || format.length > 15 || format.length == 14) {
+            throw new SurveyException("Format string invalid: " + str);
+        }
+
+        AzimutUnits azUn = AzimutUnits.getByUnit(format[0]);
+        boolean quads = azUn.equals(AzimutUnits.QUADS);
+        if (quads) {
+            azUn = AzimutUnits.DEGREES; // workaround for quads (Brunton compass and similar devices)
+        }
+
+        LengthUnits lenUn = LengthUnits.getByUnit(format[1]);
+        boolean lenFeetInches = lenUn.equals(LengthUnits.FEET_INCHES);
+        if (lenFeetInches) {
+            lenUn = LengthUnits.FEET_DECIMAL; // workaround for feet and inches
+        }
+
+        LengthUnits dimUn = LengthUnits.getByUnit(format[2]);
+        boolean dimFeetInches = dimUn.equals(LengthUnits.FEET_INCHES);
+        if (dimFeetInches) {
+            dimUn = LengthUnits.FEET_DECIMAL; // workaround for feet and inches
+        }
+
+        InclinationUnits incUn = InclinationUnits.getByUnit(format[3]);
+        boolean degreesMinutes = incUn.equals(InclinationUnits.DEGREES_MINUTES);
+        if (degreesMinutes) {
+            incUn = InclinationUnits.DEGREES; // workaround for degrees and minutes
+        }
+
+        Dimensions[] dimensions = new Dimensions[4];
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = Dimensions.getByType(format[4 + i]); // passage dimensions
+        }
+
+        ShotItems[] shotItems = new ShotItems[format.length == 15 ? 5 : 3];
+        for (int i = 0; i < 3; i++) {
+            shotItems[i] = ShotItems.getByType(format[8 + i]); // shot items (length, azimut...)
+        }
+
+        boolean reverse = false;
+        DimensionsAssociations association = DimensionsAssociations.FROM; // default in older Compass versions
+        if (format.length == 12 || format.length == 13) {
+            reverse = format[11] == 'B';
+        }
+        if (format.length == 13) {
+            association = DimensionsAssociations.getByStation(format[12]);
+        }
+        if (format.length == 15) {
+            shotItems[3] = ShotItems.getByType(format[11]);
+            shotItems[4] = ShotItems.getByType(format[12]);
+            reverse = format[13] == 'B';
+            association = DimensionsAssociations.getByStation(format[14]);
+        }
+
+        ShotLayout layout = new ShotLayout(azUn, lenUn, dimUn, incUn, dimensions, shotItems, reverse, association);
+        return new ShotDecoder(layout, quads, lenFeetInches, dimFeetInches, degreesMinutes);
+    }
+}
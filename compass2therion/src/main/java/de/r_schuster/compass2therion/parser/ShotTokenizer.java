@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Splits a line of survey data into whitespace separated columns. The line is
+ * scanned once and only the column boundaries are remembered. This gives the
+ * same columns as <code>line.trim().split("\\s+")</code> without running a
+ * regular expression and without creating a String for every column.
+ *
+ * An instance is reused from line to line and is not thread safe.
+ *
+ * @author roger
+ */
+final class ShotTokenizer {
+
+    // more digits would overflow a long in hundredths
+    private static final int MAX_DIGITS = 16;
+
+    private CharSequence line;
+    private int count;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private char[] chars = new char[32];
+    // a number of the line was not given in hundredths, see rounded()
+    private boolean rounded;
+
+    void reset(CharSequence line) {
+        this.line = line;
+        this.count = 0;
+        this.rounded = false;
+
+        // same as String.trim()
+        int begin = 0;
+        int end = line.length();
+        while (begin < end && line.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // an empty line still gives one empty column like String.split()
+        if (begin == end) {
+            add(begin, end);
+            return;
+        }
+
+        int i = begin;
+        while (i < end) {
+            int start = i;
+            while (i < end && !isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            add(start, i);
+            while (i < end && isWhitespace(line.charAt(i))) {
+                i++;
+            }
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    String string(int column) {
+        return line.subSequence(starts[column], ends[column]).toString();
+    }
+
+    boolean startsWith(int column, String prefix) {
+        int start = starts[column];
+        if (ends[column] - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean contains(int column, char c) {
+        for (int i = starts[column]; i < ends[column]; i++) {
+            if (line.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a number column as fixed point value in hundredths. Compass writes
+     * all numbers with two decimals which are read directly from the line.
+     * Anything else goes through BigDecimal and is rounded half up to
+     * hundredths.
+     */
+    long hundredths(int column) {
+        int i = starts[column];
+        final int end = ends[column];
+
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (decimals == 2 || digits == MAX_DIGITS) {
+                    return decimal(column);
+                }
+                value = value * 10 + (c - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return decimal(column);
+            }
+        }
+        if (digits == 0) {
+            return decimal(column); // BigDecimal throws the usual NumberFormatException
+        }
+
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            value *= 10;
+        }
+        return negative ? -value : value;
+    }
+
+    private long decimal(int column) {
+        BigDecimal exact = exact(column);
+        BigDecimal hundredths = exact.setScale(2, RoundingMode.HALF_UP);
+        if (hundredths.compareTo(exact) != 0 || hundredths.unscaledValue().bitLength() > 63) {
+            rounded = true;
+        }
+        return hundredths.unscaledValue().longValue();
+    }
+
+    /**
+     * @return the number in the column as it is written
+     */
+    BigDecimal exact(int column) {
+        int start = starts[column];
+        int len = ends[column] - start;
+        if (chars.length < len) {
+            chars = new char[len];
+        }
+        for (int i = 0; i < len; i++) {
+            chars[i] = line.charAt(start + i);
+        }
+        return new BigDecimal(chars, 0, len);
+    }
+
+    /**
+     * @return true if a number read by {@link #hundredths} since the last
+     * reset had more than two decimals or did not fit, so the value returned
+     * for it is not exact
+     */
+    boolean rounded() {
+        return rounded;
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    // the characters matched by \s in java.util.regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
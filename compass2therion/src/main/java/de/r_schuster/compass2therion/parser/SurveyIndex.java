@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import de.r_schuster.compass2therion.data.Survey;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the surveys of a survey file, built by reading only the header
+ * lines of each survey. Every entry knows where its survey is located in the
+ * bytes of the file, so single surveys can be parsed without reading the rest
+ * of the file.
+ *
+ * @author roger
+ */
+public final class SurveyIndex {
+
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> byName = new HashMap<>();
+
+    SurveyIndex(ByteBuffer buffer, Charset charset) {
+        this.buffer = buffer;
+        this.charset = charset;
+    }
+
+    void add(Entry entry) {
+        entries.add(entry);
+        byName.putIfAbsent(entry.getSurvey().getName(), entry);
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return the entries in the order of the file
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the first survey with the given name or null
+     */
+    public Entry get(String surveyName) {
+        return byName.get(surveyName);
+    }
+
+    /**
+     * Location and header of one survey.
+     */
+    public static final class Entry {
+
+        private final Survey survey;
+        private final int offset;
+        private final int length;
+        private final int firstLine;
+        private final int shotCount;
+
+        Entry(Survey survey, int offset, int length, int firstLine, int shotCount) {
+            this.survey = survey;
+            this.offset = offset;
+            this.length = length;
+            this.firstLine = firstLine;
+            this.shotCount = shotCount;
+        }
+
+        /**
+         * @return the survey with its header values but without shots
+         */
+        public Survey getSurvey() {
+            return survey;
+        }
+
+        /**
+         * @return byte offset of the first line of the survey
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return number of bytes up to and including the FORM_FEED line
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return line number of the first line of the survey in the file
+         */
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        public int getShotCount() {
+            return shotCount;
+        }
+    }
+}
@@ -18,10 +18,19 @@ package de.r_schuster.compass2therion.parser;
 
 import de.r_schuster.compass2therion.networking.Networking;
 import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.exceptions.SurveyException;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  *
@@ -31,4 +40,68 @@ public interface SurveyParser {
 
     Cave parse(String caveName, InputStream is, Charset charset, Networking networking) throws IOException;
 
+    /**
+     * Parses a survey file. Implementations may read the file in a more
+     * efficient way than through an InputStream.
+     */
+    default Cave parse(String caveName, Path path, Charset charset, Networking networking) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            return parse(caveName, is, charset, networking);
+        }
+    }
+
+    /**
+     * Parses only the surveys with the given names.
+     *
+     * @throws SurveyException if a survey is not part of the file
+     */
+    default Cave parse(String caveName, Path path, Charset charset, Collection<String> surveyNames, Networking networking) throws IOException {
+        try (Stream<Survey> surveys = surveys(path, charset)) {
+            return select(caveName, surveys, surveyNames, networking);
+        }
+    }
+
+    /**
+     * Builds a cave from the surveys with the given names.
+     *
+     * @throws SurveyException if a survey is not part of the stream
+     */
+    static Cave select(String caveName, Stream<Survey> surveys, Collection<String> surveyNames, Networking networking) {
+        Cave cave = new Cave(caveName);
+        Set<String> found = new HashSet<>();
+        surveys.filter(s -> surveyNames.contains(s.getName())).forEachOrdered(s -> {
+            found.add(s.getName());
+            cave.addSurvey(s);
+        });
+        for (String name : surveyNames) {
+            if (!found.contains(name)) {
+                throw new SurveyException("Survey " + name + " not found in survey file!");
+            }
+        }
+
+        networking.networking(cave); // establishing connections between surveys
+
+        return cave;
+    }
+
+    /**
+     * Reads the surveys of a file one after the other without building a
+     * cave and without networking. Implementations may read lazily, so the
+     * InputStream must stay open until the stream is consumed.
+     */
+    default Stream<Survey> surveys(InputStream is, Charset charset) throws IOException {
+        return parse("", is, charset, cave -> {
+        }).getSurveys().stream();
+    }
+
+    /**
+     * Reads the surveys of a file one after the other without building a
+     * cave and without networking.
+     */
+    default Stream<Survey> surveys(Path path, Charset charset) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            return surveys(is, charset).collect(Collectors.toList()).stream();
+        }
+    }
+
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.writer;
+
+import de.r_schuster.compass2therion.charsets.Charsets;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encodes characters into a large buffer of its own and hands the buffer to a
+ * channel when it is full. Unlike an OutputStreamWriter behind a
+ * BufferedWriter there are no locks and no second buffer, and characters below
+ * 128 are copied into the buffer as they are if the charset is ASCII
+ * compatible. Only the other characters go through the encoder.
+ *
+ * The writer is not thread safe, it is meant to be owned by one thread.
+ *
+ * @author roger
+ */
+public final class ChannelWriter extends Writer {
+
+    private static final int CAPACITY = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final boolean ascii;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    // bytes in use
+    private int position;
+    // strings are copied here before they are encoded
+    private final char[] chars = new char[8192];
+    private final char[] single = new char[1];
+    private final char[] pair = new char[2];
+    private final CharBuffer pairBuffer = CharBuffer.wrap(pair);
+    // a high surrogate at the end of a write which waits for its low surrogate
+    private char pending;
+    private boolean closed;
+
+    public ChannelWriter(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, CAPACITY);
+    }
+
+    ChannelWriter(WritableByteChannel channel, Charset charset, int capacity) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.ascii = Charsets.isAsciiCompatible(charset);
+        // room for the longest encoding of a surrogate pair
+        this.bytes = new byte[Math.max(capacity, 2 * (int) Math.ceil(encoder.maxBytesPerChar()))];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Opens a new file, it must not exist yet.
+     */
+    public static ChannelWriter open(Path path, Charset charset) throws IOException {
+        return new ChannelWriter(FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), charset);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        if (ascii && c < 0x80 && pending == 0) {
+            if (position == bytes.length) {
+                flushBuffer();
+            }
+            bytes[position++] = (byte) c;
+        } else {
+            single[0] = (char) c;
+            write(single, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            int n = Math.min(end - off, chars.length);
+            str.getChars(off, off + n, chars, 0);
+            write(chars, 0, n);
+            off += n;
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        int end = off + len;
+        int i = off;
+        if (pending != 0 && i < end) {
+            if (Character.isLowSurrogate(cbuf[i])) {
+                encode(pending, cbuf[i++], 2);
+            } else {
+                encode(pending, (char) 0, 1);
+            }
+            pending = 0;
+        }
+        while (i < end) {
+            if (ascii) {
+                int pos = position;
+                int limit = i + Math.min(end - i, bytes.length - pos);
+                while (i < limit) {
+                    char c = cbuf[i];
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    bytes[pos++] = (byte) c;
+                    i++;
+                }
+                position = pos;
+                if (i == end) {
+                    break;
+                }
+                if (pos == bytes.length) {
+                    flushBuffer();
+                    continue;
+                }
+            }
+            char c = cbuf[i++];
+            if (!Character.isHighSurrogate(c)) {
+                encode(c, (char) 0, 1);
+            } else if (i < end) {
+                encode(c, cbuf[i++], 2);
+            } else {
+                pending = c;
+            }
+        }
+    }
+
+    // the slow way for one character or a surrogate pair
+    private void encode(char first, char second, int count) throws IOException {
+        if (bytes.length - position < pair.length * encoder.maxBytesPerChar()) {
+            flushBuffer();
+        }
+        if (count == 1 && Character.isHighSurrogate(first)) {
+            // the encoder would wait for the low surrogate
+            byte[] replacement = encoder.replacement();
+            System.arraycopy(replacement, 0, bytes, position, replacement.length);
+            position += replacement.length;
+            return;
+        }
+        pair[0] = first;
+        pair[1] = second;
+        pairBuffer.clear().limit(count);
+        buffer.clear().position(position);
+        encoder.encode(pairBuffer, buffer, false);
+        position = buffer.position();
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (pending != 0) {
+                encode(pending, (char) 0, 1);
+                pending = 0;
+            }
+            // whatever a stateful encoder still holds
+            if (bytes.length - position < pair.length * encoder.maxBytesPerChar()) {
+                flushBuffer();
+            }
+            buffer.clear().position(position);
+            encoder.encode(CharBuffer.allocate(0), buffer, true);
+            encoder.flush(buffer);
+            position = buffer.position();
+            flushBuffer();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.writer;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the files of {@link TherionWriter#writeSplit} again, but only those
+ * whose content changed since the last run. The SHA-256 of every file is kept
+ * in a manifest next to the master file, in the format of sha256sum. Files
+ * whose hash is unchanged are not touched and keep their modification time.
+ * Survey files of surveys which are gone are deleted.
+ *
+ * The equates are sorted, the connections of a cave are a set and would come
+ * in a different order from run to run otherwise.
+ *
+ * @author roger
+ */
+public class IncrementalWriter implements SurveyWriter {
+
+    /**
+     * Appended to the name of the master file for the manifest.
+     */
+    public static final String MANIFEST = ".sha256";
+
+    private static final Comparator<String> NAMES = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Connection> CANONICAL = Comparator
+            .comparing(Connection::getThisSurvey, NAMES)
+            .thenComparing(Connection::getThisStation, NAMES)
+            .thenComparing(Connection::getOtherSurvey, NAMES)
+            .thenComparing(Connection::getOtherStation, NAMES);
+
+    private final Path master;
+    private final Path directory;
+    private final List<Path> written = new ArrayList<>();
+    private final List<Path> unchanged = new ArrayList<>();
+    private final List<Path> deleted = new ArrayList<>();
+
+    /**
+     * @param directory directory for the survey files next to the master
+     * file
+     */
+    public IncrementalWriter(Path master, Path directory) {
+        this.master = master;
+        this.directory = directory;
+    }
+
+    @Override
+    public void write(Charset charset, Cave cave) throws IOException {
+        write(charset, cave, false);
+    }
+
+    @Override
+    public void write(Charset charset, Cave cave, boolean renameSurveys) throws IOException {
+        written.clear();
+        unchanged.clear();
+        deleted.clear();
+
+        // renders the files, its own output is not used
+        TherionWriter renderer = new TherionWriter(Writer.nullWriter());
+        if (renameSurveys) {
+            renderer.renameSurveys(cave);
+            renderer.renameStations(cave);
+        }
+        TherionWriter.internShots(cave);
+        renderer.shareSpecial(cave.getStations());
+
+        Path manifest = master.resolveSibling(master.getFileName() + MANIFEST);
+        Map<String, String> before = readManifest(manifest);
+
+        List<Survey> surveys = cave.getSurveys();
+        List<String> inputs = TherionWriter.inputs(directory, TherionWriter.fileNames(surveys));
+        Files.createDirectories(directory);
+        List<Callable<String>> files = new ArrayList<>(surveys.size());
+        for (int i = 0; i < surveys.size(); i++) {
+            Survey survey = surveys.get(i);
+            String input = inputs.get(i);
+            files.add(() -> update(input, renderer.surveyFile(charset, survey).getBytes(charset), before));
+        }
+
+        Map<String, String> after = new LinkedHashMap<>();
+        List<Future<String>> results = ForkJoinPool.commonPool().invokeAll(files);
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                after.put(inputs.get(i), results.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SurveyException("Interrupted while writing survey files!", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new SurveyException("Error while writing survey files!", e.getCause());
+            }
+        }
+
+        List<Connection> connections = new ArrayList<>(cave.getConnections());
+        connections.sort(CANONICAL);
+        String name = master.getFileName().toString();
+        after.put(name, update(name, renderer.masterFile(charset, cave, connections, inputs).getBytes(charset), before));
+
+        // survey files of the last run which are not needed any more
+        String prefix = directory.getFileName() + "/";
+        for (String old : before.keySet()) {
+            if (!after.containsKey(old) && old.startsWith(prefix) && old.indexOf('/', prefix.length()) < 0
+                    && !old.substring(prefix.length()).startsWith(".")) {
+                Path file = resolve(old);
+                if (Files.deleteIfExists(file)) {
+                    deleted.add(file);
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        after.forEach((file, hash) -> sb.append(hash).append("  ").append(file).append('\n'));
+        byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        if (!Files.exists(manifest) || !Arrays.equals(content, Files.readAllBytes(manifest))) {
+            Files.write(manifest, content);
+        }
+    }
+
+    // writes the file unless it exists with the same hash, returns the hash
+    private String update(String input, byte[] content, Map<String, String> before) throws IOException {
+        String hash = sha256(content);
+        Path file = resolve(input);
+        boolean same = hash.equals(before.get(input)) && Files.exists(file);
+        if (!same) {
+            Files.write(file, content);
+        }
+        List<Path> list = same ? unchanged : written;
+        synchronized (list) {
+            list.add(file);
+        }
+        return hash;
+    }
+
+    private Path resolve(String input) {
+        return master.resolveSibling(input);
+    }
+
+    // file name to hash, nothing if there is no manifest yet
+    private static Map<String, String> readManifest(Path manifest) throws IOException {
+        Map<String, String> hashes = new LinkedHashMap<>();
+        if (!Files.exists(manifest)) {
+            return hashes;
+        }
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            int split = line.indexOf("  ");
+            if (split > 0) {
+                hashes.put(line.substring(split + 2), line.substring(0, split));
+            }
+        }
+        return hashes;
+    }
+
+    private static String sha256(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(content);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(hash[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return the files written by the last call of write
+     */
+    public List<Path> getWritten() {
+        return Collections.unmodifiableList(written);
+    }
+
+    /**
+     * @return the files which were already up to date
+     */
+    public List<Path> getUnchanged() {
+        return Collections.unmodifiableList(unchanged);
+    }
+
+    /**
+     * @return the survey files of the last run which were deleted
+     */
+    public List<Path> getDeleted() {
+        return Collections.unmodifiableList(deleted);
+    }
+}
@@ -23,6 +23,9 @@ import de.r_schuster.compass2therion.data.Dimensions;
 import de.r_schuster.compass2therion.data.DimensionsAssociations;
 import de.r_schuster.compass2therion.data.Shot;
 import de.r_schuster.compass2therion.data.ShotItems;
+import de.r_schuster.compass2therion.data.ShotLayout;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Stations;
 import de.r_schuster.compass2therion.data.Survey;
 import de.r_schuster.compass2therion.data.SurveyDate;
 
@@ -32,12 +35,27 @@ import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -53,9 +71,85 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
     private static final Logger LOGGER = Logger.getLogger(TherionWriter.class.getName());
     private static final String COMMENT = "# ";
     private static final Pattern SPECIAL = Pattern.compile("^.*\\W.*$");
+    private static final byte UNKNOWN = 0;
+    private static final byte SPECIAL_NAME = 1;
+    private static final byte NOT_SPECIAL = 2;
+
+    // result of the SPECIAL check by station id
+    private Stations specialStations;
+    private byte[] special = new byte[0];
+    // digits of a number, filled from the end; a sign, 19 digits, the point and a blank
+    private final char[] number = new char[24];
+
+    // written directly instead of through the buffer if it is given
+    private final Writer sink;
+    private final boolean parallel;
 
     public TherionWriter(Writer out) {
+        this(out, false);
+    }
+
+    /**
+     * @param parallel render the surveys in the fork-join pool, the output
+     * is the same
+     */
+    public TherionWriter(Writer out, boolean parallel) {
         super(out);
+        this.sink = null;
+        this.parallel = parallel;
+    }
+
+    public TherionWriter(ChannelWriter out) {
+        this(out, false);
+    }
+
+    /**
+     * Writes straight into the buffer of the channel writer. The buffer and
+     * the lock of the BufferedWriter are not used then.
+     *
+     * @param parallel render the surveys in the fork-join pool, the output
+     * is the same
+     */
+    public TherionWriter(ChannelWriter out, boolean parallel) {
+        super(out, 1);
+        this.sink = out;
+        this.parallel = parallel;
+    }
+
+    // writes one survey for writeSurveysParallel and writeSplit
+    private TherionWriter(Writer out, TherionWriter parent) {
+        super(out, 1);
+        this.sink = out;
+        this.parallel = false;
+        this.specialStations = parent.specialStations;
+        this.special = parent.special;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (sink != null) {
+            sink.write(c);
+        } else {
+            super.write(c);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (sink != null) {
+            sink.write(cbuf, off, len);
+        } else {
+            super.write(cbuf, off, len);
+        }
+    }
+
+    @Override
+    public void write(String s, int off, int len) throws IOException {
+        if (sink != null) {
+            sink.write(s, off, len);
+        } else {
+            super.write(s, off, len);
+        }
     }
 
     private void commentln(String str) throws IOException {
@@ -94,42 +188,250 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
     @Override
     public void write(Charset charset, Cave cave, boolean renameSurveys) throws IOException {
 
+        Collection<Connection> connections = cave.getConnections();
         if (renameSurveys) {
+            // the equates keep the order the connections had before renaming
+            connections = new ArrayList<>(connections);
             renameSurveys(cave);
             renameStations(cave);
         }
 
+        writeHeader(charset, cave, connections);
+
+        // surveys
+        if (parallel) {
+            writeSurveysParallel(cave);
+        } else {
+            cave.getSurveys().forEach(survey -> {
+                try {
+                    writeSurvey(survey);
+                } catch (IOException e) {
+                    throw new SurveyException("Error while writing survey " + survey.getName(), e);
+                }
+            });
+        }
+
+        newLine();
+        newLine();
+
+        flush();
+    }
+
+    /**
+     * Writes each survey into a file of its own in the directory and, as the
+     * output of this writer, a master file with the equates and an input
+     * command for each survey file. The survey files are written
+     * concurrently in the fork-join pool. The directory is expected next to
+     * the master file, the input commands refer to it by its name. Existing
+     * survey files are not overwritten, if one of them exists nothing is
+     * written.
+     *
+     * @return the survey files in the order of the surveys
+     * @throws FileAlreadyExistsException if a survey file exists already
+     */
+    public List<Path> writeSplit(Charset charset, Cave cave, boolean renameSurveys, Path directory) throws IOException {
+        Collection<Connection> connections = cave.getConnections();
+        if (renameSurveys) {
+            // the equates keep the order the connections had before renaming
+            connections = new ArrayList<>(connections);
+            renameSurveys(cave);
+            renameStations(cave);
+        }
+        internShots(cave);
+        shareSpecial(cave.getStations());
+
+        List<Survey> surveys = cave.getSurveys();
+        List<String> names = fileNames(surveys);
+        for (String name : names) {
+            Path file = directory.resolve(name);
+            if (Files.exists(file)) {
+                throw new FileAlreadyExistsException(file.toString());
+            }
+        }
+        Files.createDirectories(directory);
+        List<Callable<Path>> files = new ArrayList<>(surveys.size());
+        for (int i = 0; i < surveys.size(); i++) {
+            Survey survey = surveys.get(i);
+            Path file = directory.resolve(names.get(i));
+            files.add(() -> {
+                try (TherionWriter writer = new TherionWriter(ChannelWriter.open(file, charset), this)) {
+                    writer.writeSurveyFile(charset, survey);
+                }
+                return file;
+            });
+        }
+
+        List<Path> written = new ArrayList<>(files.size());
+        for (Future<Path> result : ForkJoinPool.commonPool().invokeAll(files)) {
+            try {
+                written.add(result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SurveyException("Interrupted while writing survey files!", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new SurveyException("Error while writing survey files!", e.getCause());
+            }
+        }
+
+        writeMaster(charset, cave, connections, inputs(directory, names));
+        flush();
+        return written;
+    }
+
+    /**
+     * @return the text of a survey file like writeSplit writes it
+     */
+    String surveyFile(Charset charset, Survey survey) throws IOException {
+        Block block = new Block();
+        try (TherionWriter writer = new TherionWriter(block, this)) {
+            writer.writeSurveyFile(charset, survey);
+        }
+        return new String(block.chars, 0, block.size);
+    }
+
+    /**
+     * @param connections the connections of the cave in the order of the
+     * equates
+     * @param inputs the survey files relative to the master file
+     * @return the text of a master file like writeSplit writes it
+     */
+    String masterFile(Charset charset, Cave cave, Collection<Connection> connections, List<String> inputs) throws IOException {
+        Block block = new Block();
+        try (TherionWriter writer = new TherionWriter(block, this)) {
+            writer.writeMaster(charset, cave, connections, inputs);
+        }
+        return new String(block.chars, 0, block.size);
+    }
+
+    private void writeSurveyFile(Charset charset, Survey survey) throws IOException {
+        writeHeader(charset, null, null);
+        writeSurvey(survey);
+    }
+
+    private void writeMaster(Charset charset, Cave cave, Collection<Connection> connections, List<String> inputs) throws IOException {
+        writeHeader(charset, cave, connections);
+        for (String input : inputs) {
+            writeln("input ", input);
+        }
+        newLine();
+        newLine();
+    }
+
+    /**
+     * @return the file names relative to the master file next to the
+     * directory
+     */
+    static List<String> inputs(Path directory, List<String> names) {
+        String prefix = directory.getFileName() + "/";
+        List<String> inputs = new ArrayList<>(names.size());
+        for (String name : names) {
+            inputs.add(prefix + name);
+        }
+        return inputs;
+    }
+
+    /*
+    File names are made of the letters, digits, underscores and minus signs
+    of the survey name. Names which differ in case only get a counter, so they
+    do not collide on file systems which ignore case.
+     */
+    static List<String> fileNames(List<Survey> surveys) {
+        List<String> names = new ArrayList<>(surveys.size());
+        Set<String> taken = new HashSet<>();
+        for (Survey survey : surveys) {
+            String base = survey.getName() == null ? "" : survey.getName().replaceAll("[^A-Za-z0-9_-]", "_");
+            if (base.isEmpty()) {
+                base = "survey";
+            }
+            String name = base;
+            for (int cnt = 2; !taken.add(name.toLowerCase(Locale.ROOT)); cnt++) {
+                name = base + "_" + cnt;
+            }
+            names.add(name + ".th");
+        }
+        return names;
+    }
+
+    /*
+    The encoding line, the name of the cave and the equates. Without a cave
+    only the encoding line is written.
+     */
+    private void writeHeader(Charset charset, Cave cave, Collection<Connection> connections) throws IOException {
         // mode line for editor
         write("encoding ");
         write(charset.name());
         newLine();
         newLine();
+        if (cave == null) {
+            return;
+        }
 
         // cave name
         commentln(cave.getName());
 
         // equate section
-        for (Connection conn : cave.getConnections()) {
+        for (Connection conn : connections) {
             write("equate ", conn.getThisStation(), "@", conn.getThisSurvey(), " ", conn.getOtherStation(), "@", conn.getOtherSurvey());
             newLine();
         }
 
         newLine();
         newLine();
+    }
 
-        // surveys
-        cave.getSurveys().forEach(survey -> {
-            try {
-                writeSurvey(survey);
-            } catch (IOException e) {
-                throw new SurveyException("Error while writing survey " + survey.getName(), e);
-            }
-        });
+    // the writers of single surveys share the checks of the station names,
+    // threads checking the same station store the same result
+    void shareSpecial(Stations stations) {
+        if (stations != specialStations) {
+            specialStations = stations;
+            special = new byte[stations.size()];
+        } else if (special.length < stations.size()) {
+            special = Arrays.copyOf(special, stations.size());
+        }
+    }
 
-        newLine();
-        newLine();
+    /*
+    Each survey is rendered into a block of its own by a writer of its own in
+    the fork-join pool. The blocks are copied into the output in the order of
+    the surveys, only this copy touches the output. A window of surveys is
+    rendered ahead of the copy, so not all blocks of a big cave are kept at
+    once.
+     */
+    private void writeSurveysParallel(Cave cave) throws IOException {
+        internShots(cave);
+        shareSpecial(cave.getStations());
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(4 * pool.getParallelism(), 16);
+        Deque<ForkJoinTask<Block>> rendering = new ArrayDeque<>();
+        Iterator<Survey> surveys = cave.getSurveys().iterator();
+        try {
+            while (surveys.hasNext() || !rendering.isEmpty()) {
+                while (surveys.hasNext() && rendering.size() < window) {
+                    Survey survey = surveys.next();
+                    rendering.add(pool.submit(() -> render(survey)));
+                }
+                Block block = rendering.poll().join();
+                write(block.chars, 0, block.size);
+            }
+        } finally {
+            for (ForkJoinTask<Block> task : rendering) {
+                task.cancel(false);
+            }
+        }
+    }
 
-        flush();
+    private Block render(Survey survey) {
+        Block block = new Block();
+        try (TherionWriter writer = new TherionWriter(block, this)) {
+            writer.writeSurvey(survey);
+        } catch (IOException e) {
+            throw new SurveyException("Error while writing survey " + survey.getName(), e);
+        }
+        return block;
     }
 
     private void writeSurvey(Survey survey) throws IOException {
@@ -157,12 +459,12 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
         newLine();
 
         // data order for regular data
+        ShotLayout layout = survey.getLayout();
+        List<ShotItems> shotItems = layout != null ? layout.getShotItems() : inOrder(survey.getShotItemsOrder());
+        List<Dimensions> dimensions = layout != null ? layout.getDimensions() : inOrder(survey.getDimensionsOrder());
+
         write("data normal from to ");
-        Map<Integer, ShotItems> shotItemsOrder = survey.getShotItemsOrder();
-        List<Integer> l = new ArrayList<>(shotItemsOrder.keySet());
-        Collections.sort(l);
-        for (Integer i : l) {
-            ShotItems item = shotItemsOrder.get(i);
+        for (ShotItems item : shotItems) {
             if (!survey.isReverse() && item.equals(ShotItems.REVERSE_AZIMUT)) {
                 //
             } else if (!survey.isReverse() && item.equals(ShotItems.REVERSE_INCLINATION)) {
@@ -173,24 +475,38 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
         }
         newLine();
 
-        // survey shots
-        for (Shot shot : survey.getShots()) {
-            if (SPECIAL.matcher(shot.getFrom()).matches()) {
-                LOGGER.log(Level.WARNING, "Station name {0} contains non-alphanumeric characters. This may cause problems in Therion.", shot.getFrom());
+        // survey shots, read column by column from the table
+        ShotTable table = shotTable(survey);
+        Stations stations = table.getStations();
+        ShotTable.Column[] shotColumns = new ShotTable.Column[shotItems.size()];
+        for (int i = 0; i < shotColumns.length; i++) {
+            shotColumns[i] = ShotTable.Column.of(shotItems.get(i));
+        }
+        ShotTable.Column[] dimColumns = new ShotTable.Column[dimensions.size()];
+        for (int i = 0; i < dimColumns.length; i++) {
+            dimColumns[i] = ShotTable.Column.of(dimensions.get(i));
+        }
+
+        for (int row = 0; row < table.size(); row++) {
+            int from = table.getFrom(row);
+            int to = table.getTo(row);
+            if (isSpecial(stations, from)) {
+                LOGGER.log(Level.WARNING, "Station name {0} contains non-alphanumeric characters. This may cause problems in Therion.", stations.getName(from));
             }
-            if (SPECIAL.matcher(shot.getTo()).matches()) {
-                LOGGER.log(Level.WARNING, "Station name {0} contains non-alphanumeric characters. This may cause problems in Therion.", shot.getTo());
+            if (isSpecial(stations, to)) {
+                LOGGER.log(Level.WARNING, "Station name {0} contains non-alphanumeric characters. This may cause problems in Therion.", stations.getName(to));
             }
-            
-            write(shot.getFrom(), " ", shot.getTo(), " ");
 
-            for (Integer i : l) {
-                ShotItems item = shotItemsOrder.get(i);
-                write(shot, item);
+            writeName(stations, from);
+            writeName(stations, to);
+
+            for (ShotTable.Column column : shotColumns) {
+                writeNum(table, column, row);
             }
 
-            if (shot.getComment() != null) {
-                write(COMMENT, shot.getComment());
+            String comment = table.getComment(row);
+            if (comment != null) {
+                write(COMMENT, comment);
             }
 
             newLine();
@@ -199,26 +515,18 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
 
         // data order for passage dimensions
         write("data dimensions station ");
-        Map<Integer, Dimensions> dimensionsOrder = survey.getDimensionsOrder();
-        List<Integer> d = new ArrayList<>(dimensionsOrder.keySet());
-        Collections.sort(d);
-        for (Integer i : d) {
-            Dimensions dim = dimensionsOrder.get(i);
+        for (Dimensions dim : dimensions) {
             write(dim.getText(), " ");
         }
         newLine();
 
         // passage dimensions
-        for (Shot shot : survey.getShots()) {
-            if (survey.getDimensionsAssociation().equals(DimensionsAssociations.FROM)) {
-                write(shot.getFrom(), " ");
-            } else {
-                write(shot.getTo(), " ");
-            }
+        boolean atFrom = survey.getDimensionsAssociation().equals(DimensionsAssociations.FROM);
+        for (int row = 0; row < table.size(); row++) {
+            writeName(stations, atFrom ? table.getFrom(row) : table.getTo(row));
 
-            for (Integer i : d) {
-                Dimensions dim = dimensionsOrder.get(i);
-                write(shot, dim);
+            for (ShotTable.Column column : dimColumns) {
+                writeNum(table, column, row);
             }
             newLine();
         }
@@ -232,6 +540,40 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
         newLine();
     }
 
+    // the regular expression runs once per station and not once per shot
+    private boolean isSpecial(Stations stations, int id) {
+        if (id == Stations.NONE) {
+            return false;
+        }
+        if (stations != specialStations) {
+            specialStations = stations;
+            special = new byte[stations.size()];
+        } else if (id >= special.length) {
+            special = Arrays.copyOf(special, stations.size());
+        }
+        if (special[id] == UNKNOWN) {
+            special[id] = SPECIAL.matcher(stations.getName(id)).matches() ? SPECIAL_NAME : NOT_SPECIAL;
+        }
+        return special[id] == SPECIAL_NAME;
+    }
+
+    // surveys with a list of shots are copied into a table
+    private static ShotTable shotTable(Survey survey) {
+        ShotTable table = survey.getShotTable();
+        return table != null ? table : ShotTable.of(survey.getShots(), survey.getStations());
+    }
+
+    // values of the map sorted by their keys
+    private static <T> List<T> inOrder(Map<Integer, T> order) {
+        List<Integer> keys = new ArrayList<>(order.keySet());
+        Collections.sort(keys);
+        List<T> values = new ArrayList<>(keys.size());
+        for (Integer key : keys) {
+            values.add(order.get(key));
+        }
+        return values;
+    }
+
     protected void writeTeam(Survey survey) throws IOException {
         for (String team : survey.getCavers()) {
             if (team != null && !team.isEmpty()) {
@@ -253,47 +595,6 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
         }
     }
 
-    private void write(Shot shot, ShotItems item) throws IOException {
-        switch (item) {
-            case LENGTH:
-                write(formatNum(shot.getLength()), " ");
-                break;
-            case AZIMUT:
-                write(formatNum(shot.getAzimut()), " ");
-                break;
-            case INCLINATION:
-                write(formatNum(shot.getInclination()), " ");
-                break;
-            case REVERSE_AZIMUT:
-                write(formatNum(shot.getReverseAzimut()), " ");
-                break;
-            case REVERSE_INCLINATION:
-                write(formatNum(shot.getReverseInclination()), " ");
-                break;
-            default:
-                break;
-        }
-    }
-
-    private void write(Shot shot, Dimensions dim) throws IOException {
-        switch (dim) {
-            case DOWN:
-                write(formatNum(shot.getDown()), " ");
-                break;
-            case LEFT:
-                write(formatNum(shot.getLeft()), " ");
-                break;
-            case RIGHT:
-                write(formatNum(shot.getRight()), " ");
-                break;
-            case UP:
-                write(formatNum(shot.getUp()), " ");
-                break;
-            default:
-                break;
-        }
-    }
-
     private String formatNum(BigDecimal bd) {
         if (bd == null) {
             return "";
@@ -301,10 +602,62 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
         return bd.setScale(2, RoundingMode.HALF_UP).toPlainString();
     }
 
+    private void writeName(Stations stations, int id) throws IOException {
+        String name = stations.getName(id);
+        if (name != null) {
+            write(name);
+        }
+        write(' ');
+    }
+
+    /*
+    Writes a value of the table followed by a blank, exactly like formatNum
+    would format it. The digits go straight from the hundredths into the
+    buffer, no BigDecimal or String is created. Only values with more than
+    two decimals take the way over formatNum to be rounded.
+     */
+    private void writeNum(ShotTable table, ShotTable.Column column, int row) throws IOException {
+        long hundredths;
+        try {
+            hundredths = table.getHundredths(column, row);
+        } catch (ArithmeticException e) {
+            write(formatNum(table.getDecimal(column, row)));
+            write(' ');
+            return;
+        }
+        if (hundredths == ShotTable.NULL) {
+            write(' ');
+            return;
+        }
+        if (hundredths == ShotTable.PASSAGE) {
+            hundredths = 0;
+        }
+        boolean negative = hundredths < 0;
+        // cannot overflow, Long.MIN_VALUE is NULL
+        long rest = negative ? -hundredths : hundredths;
+        int pos = number.length;
+        number[--pos] = ' ';
+        number[--pos] = (char) ('0' + rest % 10);
+        rest /= 10;
+        number[--pos] = (char) ('0' + rest % 10);
+        rest /= 10;
+        number[--pos] = '.';
+        do {
+            number[--pos] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (negative) {
+            number[--pos] = '-';
+        }
+        write(number, pos, number.length - pos);
+    }
+
     protected void renameSurveys(Cave cave) {
         int cnt = 1;
 
         Set<String> surveyNames = cave.getSurveys().stream().map(Survey::getName).collect(Collectors.toSet());
+        // new names never collide with old ones, so connections are renamed in one pass
+        Map<String, String> renamed = new HashMap<>();
 
         for (Survey survey : cave.getSurveys()) {
             String oldSurveyName = survey.getName();
@@ -320,58 +673,114 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
                 LOGGER.log(Level.INFO, "Renaming old survey {0} to new survey name {1}", new Object[]{oldSurveyName, newSurveyName});
                 // renaming survey
                 survey.setName(newSurveyName);
+                renamed.put(oldSurveyName, newSurveyName);
+            }
 
-                // renaming connections
-                for (Connection conn : cave.getConnections()) {
-                    if (conn.getThisSurvey().equals(oldSurveyName)) {
-                        conn.setThisSurvey(newSurveyName);
-                    }
-                    if (conn.getOtherSurvey().equals(oldSurveyName)) {
-                        conn.setOtherSurvey(newSurveyName);
-                    }
-                }
+        }
 
+        // renaming connections
+        if (!renamed.isEmpty()) {
+            for (Connection conn : cave.getConnections()) {
+                conn.setThisSurvey(renamed.getOrDefault(conn.getThisSurvey(), conn.getThisSurvey()));
+                conn.setOtherSurvey(renamed.getOrDefault(conn.getOtherSurvey(), conn.getOtherSurvey()));
             }
-
+            rehashConnections(cave);
         }
     }
 
+    // the hash codes of the connections change with their names
+    private static void rehashConnections(Cave cave) {
+        List<Connection> connections = new ArrayList<>(cave.getConnections());
+        cave.getConnections().clear();
+        cave.getConnections().addAll(connections);
+    }
+
+    /*
+    Stations are renamed in the order they first appear in the shots. The new
+    names go into the station table of the cave, so every shot and connection
+    referring to a station takes its new name without being touched.
+     */
     protected void renameStations(Cave cave) {
-        // remember station names
-        Map<String, String> stationNames = new LinkedHashMap<>();
+        Stations stations = cave.getStations();
+        bindShots(cave);
+
+        // station ids in the order of their first appearance
+        boolean[] seen = new boolean[stations.size()];
+        int[] order = new int[stations.size()];
+        int count = 0;
+        // current station names
+        Set<String> names = new HashSet<>();
 
         for (Survey survey : cave.getSurveys()) {
-            for (Shot shot : survey.getShots()) {
-                stationNames.put(shot.getFrom(), shot.getFrom());
-                stationNames.put(shot.getTo(), shot.getTo());
+            ShotTable table = shotTable(survey);
+            for (int row = 0; row < table.size(); row++) {
+                for (int k = 0; k < 2; k++) {
+                    int id = k == 0 ? table.getFrom(row) : table.getTo(row);
+                    if (id != Stations.NONE && !seen[id]) {
+                        seen[id] = true;
+                        order[count++] = id;
+                        names.add(stations.getName(id));
+                    }
+                }
             }
         }
+        for (Connection conn : cave.getConnections()) {
+            names.add(conn.getThisStation());
+            names.add(conn.getOtherStation());
+        }
 
         // map old to new station names
         int cnt = 1;
-        for (Map.Entry<String, String> next : stationNames.entrySet()) {
-            String oldName = next.getKey();
-            String newName = next.getValue();
-            if (SPECIAL.matcher(oldName).matches()) {
-                while (stationNames.containsValue(newName)) {
+        boolean renamed = false;
+        for (int i = 0; i < count; i++) {
+            int id = order[i];
+            String oldName = stations.getName(id);
+            if (isSpecial(stations, id)) {
+                String newName = oldName;
+                while (names.contains(newName)) {
                     cnt++;
                     newName = String.valueOf(cnt);
                 }
-                stationNames.replace(oldName, newName);
+                names.remove(oldName);
+                names.add(newName);
+                int stale = stations.find(newName);
+                if (stale != Stations.NONE) {
+                    // left behind by a removed or replaced survey
+                    stations.release(stale);
+                }
+                stations.rename(id, newName);
+                special[id] = NOT_SPECIAL;
+                renamed = true;
                 LOGGER.log(Level.INFO, "Renaming old station {0} to new station name {1}", new Object[]{oldName, newName});
             }
         }
+        if (renamed) {
+            rehashConnections(cave);
+        }
+    }
 
+    // shots added to a survey by hand may still use a table of their own, their
+    // names are interned here so the threads copying them into tables only
+    // look them up and do not change the shared table
+    static void internShots(Cave cave) {
         for (Survey survey : cave.getSurveys()) {
+            if (survey.getShotTable() != null) {
+                continue;
+            }
+            Stations stations = survey.getStations();
             for (Shot shot : survey.getShots()) {
-                shot.setFrom(stationNames.get(shot.getFrom()));
-                shot.setTo(stationNames.get(shot.getTo()));
+                if (shot.getStations() != stations) {
+                    stations.intern(shot.getFrom());
+                    stations.intern(shot.getTo());
+                }
             }
         }
+    }
 
-        for (Connection conn : cave.getConnections()) {
-            conn.setThisStation(stationNames.get(conn.getThisStation()));
-            conn.setOtherStation(stationNames.get(conn.getOtherStation()));
+    // shots added to a survey by hand may still use a table of their own
+    private static void bindShots(Cave cave) {
+        for (Survey survey : cave.getSurveys()) {
+            survey.setStations(cave.getStations());
         }
     }
 
@@ -409,4 +818,46 @@ public class TherionWriter extends BufferedWriter implements SurveyWriter {
         write(val);
     }
 
+    /**
+     * The text of one survey, unlike CharArrayWriter without locks.
+     */
+    private static final class Block extends Writer {
+
+        private char[] chars = new char[8192];
+        private int size;
+
+        @Override
+        public void write(int c) {
+            ensureCapacity(1);
+            chars[size++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(cbuf, off, chars, size, len);
+            size += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            ensureCapacity(len);
+            str.getChars(off, off + len, chars, size);
+            size += len;
+        }
+
+        private void ensureCapacity(int len) {
+            if (size + len > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, size + len));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
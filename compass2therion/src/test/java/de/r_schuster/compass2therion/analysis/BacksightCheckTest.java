@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.AzimutUnits;
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.InclinationUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotTable;
+import de.r_schuster.compass2therion.data.Stations;
+import de.r_schuster.compass2therion.data.Survey;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class BacksightCheckTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void degrees() {
+        Survey survey = new Survey();
+        survey.setName("A");
+        survey.setReverse(true);
+        survey.addShot(shot("1", "2", "359.00", "178.00", "10.00", "-11.00"));
+        survey.addShot(shot("2", "3", "10.00", "200.00", "0.00", "0.00"));
+        survey.addShot(shot("3", "4", "90.00", "270.00", "-20.00", "17.50"));
+        survey.addShot(shot("4", "5", "90.00", null, null, "45.00"));
+
+        List<BacksightDisagreement> disagreements = new BacksightCheck().check(survey);
+        assertEquals(2, disagreements.size());
+        BacksightDisagreement azimut = disagreements.get(0);
+        assertEquals("A", azimut.getSurvey());
+        assertEquals(1, azimut.getShot());
+        assertEquals("2", azimut.getFrom());
+        assertEquals("3", azimut.getTo());
+        assertEquals(10, azimut.getAzimutDifference(), DELTA);
+        assertEquals(0, azimut.getInclinationDifference(), DELTA);
+        BacksightDisagreement inclination = disagreements.get(1);
+        assertEquals(2, inclination.getShot());
+        assertEquals(0, inclination.getAzimutDifference(), DELTA);
+        assertEquals(2.5, inclination.getInclinationDifference(), DELTA);
+
+        assertEquals(1, new BacksightCheck(20, 2).check(survey).size());
+        assertEquals(0, new BacksightCheck(10, 2.5).check(survey).size());
+    }
+
+    @Test
+    public void table() {
+        Cave cave = new Cave("Units");
+        Survey grads = new Survey(new ShotTable(new Stations()));
+        grads.setName("B");
+        grads.setReverse(true);
+        grads.setAzimutUnit(AzimutUnits.GRADS);
+        grads.setInclinationUnit(InclinationUnits.PERCENT);
+        // 399 and 199 grads are half a circle apart, 100 percent are 45 degrees
+        grads.addShot(shot("1", "2", "399.00", "199.00", "100.00", "-45.00"));
+        // 4 grads are 3.6 degrees
+        grads.addShot(shot("2", "3", "2.00", "198.00", "100.00", "-45.00"));
+        cave.addSurvey(grads);
+
+        Survey foresights = new Survey();
+        foresights.setName("C");
+        foresights.addShot(shot("1", "2", "0.00", "0.00", "0.00", "0.00"));
+        cave.addSurvey(foresights);
+
+        List<BacksightDisagreement> disagreements = new BacksightCheck().check(cave);
+        assertEquals(1, disagreements.size());
+        assertEquals("B", disagreements.get(0).getSurvey());
+        assertEquals("2", disagreements.get(0).getFrom());
+        assertEquals(3.6, disagreements.get(0).getAzimutDifference(), DELTA);
+        assertEquals(0, disagreements.get(0).getInclinationDifference(), DELTA);
+    }
+
+    private static Shot shot(String from, String to, String azimut, String reverseAzimut, String inclination, String reverseInclination) {
+        Shot shot = new Shot();
+        shot.setFrom(from);
+        shot.setTo(to);
+        shot.setLength(new BigDecimal("5.00"));
+        shot.setAzimut(decimal(azimut));
+        shot.setReverseAzimut(decimal(reverseAzimut));
+        shot.setInclination(decimal(inclination));
+        shot.setReverseInclination(decimal(reverseInclination));
+        return shot;
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class BlunderDetectionTest {
+
+    @Test
+    public void blunder() {
+        Cave cave = new Cave("Blunder");
+        Survey main = new Survey();
+        main.setName("Main");
+        // B lies 10 m east of A, but the shot was entered as 15 m
+        main.addShot(shot("A", "B", 0, 0, 15, 0));
+        cave.addSurvey(main);
+        for (int i = 1; i <= 5; i++) {
+            Survey side = new Survey();
+            side.setName("Side" + i);
+            side.addShot(shot("A", "C" + i, 0, 0, 5, 5 * i));
+            side.addShot(shot("C" + i, "B", 5, 5 * i, 10, 0));
+            cave.addSurvey(side);
+        }
+
+        BlunderReport report = new BlunderDetection().analyze(StationGraph.of(cave));
+        assertEquals(5, report.getLoops().size());
+        assertEquals(5, report.getBadLoopCount());
+        SuspectShot first = report.getSuspects().get(0);
+        assertEquals("Main", first.getSurvey());
+        assertEquals("A", first.getFrom());
+        assertEquals("B", first.getTo());
+        assertEquals(5, first.getBadLoops());
+        assertEquals(5, first.getLoops());
+        assertTrue(first.getWorstRelativeMisclosure() > 0.1);
+        assertEquals("Main", report.getSurveys().get(0));
+        assertEquals(1, report.getSuspects("Main").size());
+        assertEquals(2, report.getSuspects("Side3").size());
+        assertTrue(report.getSuspects("None").isEmpty());
+        for (SuspectShot other : report.getSuspects().subList(1, report.getSuspects().size())) {
+            assertEquals(1, other.getBadLoops());
+        }
+    }
+
+    @Test
+    public void closed() {
+        Cave cave = new Cave("Closed");
+        Survey survey = new Survey();
+        survey.setName("A");
+        survey.addShot(shot("1", "2", 0, 0, 10, 0));
+        survey.addShot(shot("2", "3", 10, 0, 10, 10));
+        survey.addShot(shot("3", "1", 10, 10, 0, 0));
+        cave.addSurvey(survey);
+
+        BlunderReport report = new BlunderDetection().analyze(StationGraph.of(cave));
+        assertEquals(1, report.getLoops().size());
+        assertEquals(0, report.getBadLoopCount());
+        assertFalse(report.isBad(0));
+        assertTrue(report.getSuspects().isEmpty());
+    }
+
+    // horizontal shot between two points, x to the east and y to the north
+    private static Shot shot(String from, String to, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double azimut = (Math.toDegrees(Math.atan2(dx, dy)) + 360) % 360;
+        Shot shot = new Shot();
+        shot.setFrom(from);
+        shot.setTo(to);
+        shot.setLength(BigDecimal.valueOf(Math.hypot(dx, dy)).setScale(2, RoundingMode.HALF_UP));
+        shot.setAzimut(BigDecimal.valueOf(azimut).setScale(2, RoundingMode.HALF_UP));
+        shot.setInclination(BigDecimal.ZERO.setScale(2));
+        return shot;
+    }
+}
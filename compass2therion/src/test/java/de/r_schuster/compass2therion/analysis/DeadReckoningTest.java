@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.AzimutUnits;
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.networking.FlatNetworking;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import de.r_schuster.compass2therion.parser.CompassParserTest;
+import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class DeadReckoningTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void walk() {
+        Cave cave = new Cave("Walk");
+        Survey a = new Survey();
+        a.setName("A");
+        a.addShot(shot("1", "2", "10", "90", "0"));
+        a.addShot(shot("2", "3", "10", "0", "90"));
+        cave.addSurvey(a);
+
+        Survey b = new Survey();
+        b.setName("B");
+        b.setLengthUnit(LengthUnits.FEET_DECIMAL);
+        b.setAzimutUnit(AzimutUnits.GRADS);
+        b.setDeclination(new BigDecimal("90"));
+        // 100 grads are 90 degrees, with the declination to the south
+        b.addShot(shot("3", "4", "100", "100", "0"));
+        cave.addSurvey(b);
+
+        // not connected
+        Survey c = new Survey();
+        c.setName("C");
+        c.addShot(shot("10", "11", "5", "0", "0"));
+        cave.addSurvey(c);
+
+        StationGraph graph = StationGraph.of(cave);
+        StationCoordinates coords = new DeadReckoning().compute(graph);
+        assertEquals(2, coords.getComponentCount());
+        int three = graph.getStations().find("3");
+        int four = graph.getStations().find("4");
+        assertEquals(10, coords.getX(three), DELTA);
+        assertEquals(0, coords.getY(three), DELTA);
+        assertEquals(10, coords.getZ(three), DELTA);
+        assertEquals(10, coords.getX(four), DELTA);
+        assertEquals(-30.48, coords.getY(four), DELTA);
+        int eleven = graph.getStations().find("11");
+        assertEquals(5, coords.getY(eleven), DELTA);
+        assertNotEquals(coords.getComponent(three), coords.getComponent(eleven));
+
+        // walking backwards from another origin
+        coords = new DeadReckoning().compute(graph, four);
+        assertEquals(four, coords.getOrigin(0));
+        int one = graph.getStations().find("1");
+        assertEquals(-10, coords.getX(one), DELTA);
+        assertEquals(30.48, coords.getY(one), DELTA);
+        assertEquals(-10, coords.getZ(one), DELTA);
+    }
+
+    @Test
+    public void backsights() {
+        Cave cave = new Cave("Backsights");
+        Survey a = new Survey();
+        a.setName("A");
+        a.setReverse(true);
+        Shot averaged = shot("1", "2", "10", "358", "10");
+        averaged.setReverseAzimut(new BigDecimal("182"));
+        averaged.setReverseInclination(new BigDecimal("-12"));
+        a.addShot(averaged);
+        Shot backsightOnly = shot("2", "3", "10", null, null);
+        backsightOnly.setReverseAzimut(new BigDecimal("270"));
+        backsightOnly.setReverseInclination(new BigDecimal("0"));
+        a.addShot(backsightOnly);
+        cave.addSurvey(a);
+
+        StationGraph graph = StationGraph.of(cave);
+        ShotVectors vectors = ShotVectors.of(graph);
+        double horizontal = 10 * Math.cos(Math.toRadians(11));
+        assertEquals(0, vectors.getDx(0), DELTA);
+        assertEquals(horizontal, vectors.getDy(0), DELTA);
+        assertEquals(10 * Math.sin(Math.toRadians(11)), vectors.getDz(0), DELTA);
+        assertEquals(10, vectors.getDx(1), DELTA);
+        assertEquals(0, vectors.getDz(1), DELTA);
+    }
+
+    @Test
+    public void parsed() throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
+        SurveyParser parser = new CompassParser();
+        Cave cave = parser.parse("Dreieingangshöhle", is, Charset.forName("Cp1252"), new FlatNetworking());
+        StationGraph graph = StationGraph.of(cave);
+        StationCoordinates coords = new DeadReckoning().compute(graph);
+        assertEquals(graph.getStationCount(), coords.getStationCount());
+        for (int s = 0; s < coords.getStationCount(); s++) {
+            assertTrue(Double.isFinite(coords.getX(s)) && Double.isFinite(coords.getY(s)) && Double.isFinite(coords.getZ(s)));
+        }
+    }
+
+    static Shot shot(String from, String to, String length, String azimut, String inclination) {
+        Shot shot = new Shot();
+        shot.setFrom(from);
+        shot.setTo(to);
+        shot.setLength(new BigDecimal(length));
+        shot.setAzimut(azimut == null ? null : new BigDecimal(azimut));
+        shot.setInclination(inclination == null ? null : new BigDecimal(inclination));
+        return shot;
+    }
+}
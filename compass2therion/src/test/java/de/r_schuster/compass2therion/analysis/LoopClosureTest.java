@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.networking.FlatNetworking;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import de.r_schuster.compass2therion.parser.CompassParserTest;
+import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class LoopClosureTest {
+
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void square() {
+        // a square of 10 m sides which misses its start by 0.4 m to the east
+        Cave cave = new Cave("Square");
+        Survey survey = new Survey();
+        survey.setName("A");
+        survey.addShot(DeadReckoningTest.shot("1", "2", "10", "0", "0"));
+        survey.addShot(DeadReckoningTest.shot("2", "3", "10", "90", "0"));
+        survey.addShot(DeadReckoningTest.shot("3", "4", "10", "180", "0"));
+        survey.addShot(DeadReckoningTest.shot("4", "1", "9.6", "270", "0"));
+        cave.addSurvey(survey);
+
+        StationGraph graph = StationGraph.of(cave);
+        LoopClosureResult result = new LoopClosure().adjust(graph);
+        assertTrue(result.isConverged());
+        assertEquals(1, result.getLoops().size());
+        Loop loop = result.getLoops().get(0);
+        assertEquals(4, loop.getEdgeCount());
+        assertEquals(39.6, loop.getLength(), DELTA);
+        assertEquals(0.4, loop.getMisclosure(), DELTA);
+        assertEquals(0.4 / 39.6, loop.getRelativeMisclosure(), DELTA);
+
+        // the misclosure is shared by the shots in proportion to their length
+        StationCoordinates adjusted = result.getAdjusted();
+        int one = graph.getStations().find("1");
+        int two = graph.getStations().find("2");
+        int three = graph.getStations().find("3");
+        int four = graph.getStations().find("4");
+        assertEquals(0, adjusted.getX(one), DELTA);
+        assertEquals(10, adjusted.getY(two), DELTA);
+        assertEquals(-0.4 * 10 / 39.6, adjusted.getX(two), DELTA);
+        assertEquals(10 - 0.4 * 20 / 39.6, adjusted.getX(three), DELTA);
+        assertEquals(10 - 0.4 * 30 / 39.6, adjusted.getX(four), DELTA);
+        assertEquals(0, adjusted.getZ(four), DELTA);
+    }
+
+    @Test
+    public void parsed() throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
+        SurveyParser parser = new CompassParser();
+        Cave cave = parser.parse("Dreieingangshöhle", is, Charset.forName("Cp1252"), new FlatNetworking());
+        StationGraph graph = StationGraph.of(cave);
+        LoopClosureResult result = new LoopClosure().adjust(graph);
+        assertTrue(result.isConverged());
+        // independent loops of a graph: edges - stations + components
+        StationCoordinates dr = result.getDeadReckoning();
+        assertEquals(graph.getEdgeCount() - graph.getStationCount() + dr.getComponentCount(), result.getLoops().size());
+        for (int s = 0; s < graph.getStationCount(); s++) {
+            assertTrue(Double.isFinite(result.getAdjusted().getX(s)));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.analysis;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.networking.FlatNetworking;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import de.r_schuster.compass2therion.parser.CompassParserTest;
+import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class StationGraphTest {
+
+    @Test
+    public void small() {
+        Cave cave = new Cave("Graph");
+        cave.addSurvey(survey("A", "1", "2", "2", "3", "3", null));
+        cave.addSurvey(survey("B", "3", "4", "2", "4"));
+        StationGraph graph = StationGraph.of(cave);
+
+        assertEquals(4, graph.getStationCount());
+        assertEquals(4, graph.getEdgeCount());
+        int two = graph.getStations().find("2");
+        assertEquals(3, graph.getDegree(two));
+        Set<String> neighbours = new HashSet<>();
+        for (int p = graph.getAdjacencyStart(two); p < graph.getAdjacencyEnd(two); p++) {
+            neighbours.add(graph.getStations().getName(graph.getNeighbour(p)));
+            int edge = graph.getEdge(p);
+            assertTrue(graph.getFrom(edge) == two || graph.getTo(edge) == two);
+        }
+        assertEquals(new HashSet<>(Arrays.asList("1", "3", "4")), neighbours);
+
+        assertEquals(1, graph.getSurveyIndex(3));
+        assertEquals(1, graph.getShotIndex(3));
+        assertEquals("B", graph.getSurvey(3).getName());
+        assertEquals("2", graph.getShot(3).getFrom());
+        assertEquals("4", graph.getShot(3).getTo());
+    }
+
+    @Test
+    public void parsed() throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
+        SurveyParser parser = new CompassParser();
+        Cave cave = parser.parse("Dreieingangshöhle", is, Charset.forName("Cp1252"), new FlatNetworking());
+        StationGraph graph = StationGraph.of(cave);
+
+        int shots = 0;
+        for (Survey survey : cave.getSurveys()) {
+            shots += survey.getShots().size();
+        }
+        assertEquals(shots, graph.getEdgeCount());
+        int degrees = 0;
+        for (int s = 0; s < graph.getStationCount(); s++) {
+            degrees += graph.getDegree(s);
+        }
+        assertEquals(2 * shots, degrees);
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            Shot shot = graph.getShot(e);
+            assertEquals(shot.getFrom(), graph.getStations().getName(graph.getFrom(e)));
+            assertEquals(shot.getTo(), graph.getStations().getName(graph.getTo(e)));
+        }
+    }
+
+    static Survey survey(String name, String... stations) {
+        Survey survey = new Survey();
+        survey.setName(name);
+        for (int i = 0; i < stations.length; i += 2) {
+            Shot shot = new Shot();
+            shot.setFrom(stations[i]);
+            shot.setTo(stations[i + 1]);
+            survey.addShot(shot);
+        }
+        return survey;
+    }
+}
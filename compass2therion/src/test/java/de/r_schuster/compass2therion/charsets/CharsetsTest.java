@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.charsets;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class CharsetsTest {
+
+    @Test
+    public void asciiCompatible() {
+        assertTrue(Charsets.isAsciiCompatible(StandardCharsets.US_ASCII));
+        assertTrue(Charsets.isAsciiCompatible(StandardCharsets.UTF_8));
+        assertTrue(Charsets.isAsciiCompatible(Charset.forName("Cp1252")));
+        assertFalse(Charsets.isAsciiCompatible(StandardCharsets.UTF_16));
+        assertFalse(Charsets.isAsciiCompatible(StandardCharsets.UTF_16LE));
+        assertFalse(Charsets.isAsciiCompatible(Charset.forName("Cp037")));
+        // shift states
+        assertFalse(Charsets.isAsciiCompatible(Charset.forName("ISO-2022-JP")));
+        assertFalse(Charsets.isAsciiCompatible(Charset.forName("ISO-2022-KR")));
+        // can only decode
+        assertFalse(Charsets.isAsciiCompatible(Charset.forName("ISO-2022-CN")));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class CaveTest {
+
+    @Test
+    public void duplicateSurveys() {
+        Cave cave = new Cave("Test");
+        Survey a = survey("A");
+        Survey b = survey("B");
+        Survey otherA = survey("A");
+        cave.addSurvey(a);
+        cave.addSurvey(b);
+        cave.addSurvey(otherA);
+        assertEquals(2, cave.getSurveys().size());
+        assertEquals(1, cave.getDuplicateSurveys().size());
+        assertSame(otherA, cave.getDuplicateSurveys().get(0));
+
+        // renamed surveys are found by their new name
+        a.setName("C");
+        cave.addSurvey(survey("C"));
+        assertEquals(2, cave.getSurveys().size());
+        cave.addSurvey(survey("A"));
+        assertEquals(3, cave.getSurveys().size());
+        assertEquals(2, cave.getDuplicateSurveys().size());
+
+        // surveys added to the list directly are seen as well
+        cave.getSurveys().add(survey("D"));
+        cave.addSurvey(survey("D"));
+        assertEquals(4, cave.getSurveys().size());
+        assertEquals(3, cave.getDuplicateSurveys().size());
+    }
+
+    @Test
+    public void removeAndReplace() {
+        Cave cave = new Cave("Test");
+        Survey a = survey("A");
+        Survey b = survey("B");
+        cave.addSurvey(a);
+        cave.addSurvey(b);
+
+        Survey newA = survey("A");
+        assertSame(a, cave.replaceSurvey(newA));
+        assertSame(newA, cave.getSurveys().get(0));
+        assertSame(cave.getStations(), newA.getStations());
+
+        assertSame(b, cave.getSurvey("B"));
+        assertSame(b, cave.removeSurvey("B"));
+        assertNull(cave.getSurvey("B"));
+        assertNull(cave.removeSurvey("B"));
+        assertEquals(1, cave.getSurveys().size());
+        cave.addSurvey(survey("B"));
+        assertEquals(2, cave.getSurveys().size());
+
+        // the old survey does not belong to the cave any more
+        a.setName("B");
+        assertNull(cave.replaceSurvey(survey("C")));
+        assertEquals(3, cave.getSurveys().size());
+        assertTrue(cave.getDuplicateSurveys().isEmpty());
+    }
+
+    @Test
+    public void duplicateShots() {
+        Survey list = new Survey();
+        Survey table = new Survey(new ShotTable(new Stations()));
+        for (Survey survey : new Survey[]{list, table}) {
+            survey.addShot(shot("1", "2"));
+            survey.addShot(shot("2", "3"));
+            survey.addShot(shot("1", "2"));
+            survey.addShot(shot("2", "1"));
+            assertEquals(3, survey.getShots().size());
+            assertEquals(1, survey.getDuplicateShots().size());
+            assertEquals("1", survey.getDuplicateShots().get(0).getFrom());
+        }
+
+        // the table sees stations changed through a view
+        table.getShots().get(1).setTo("4");
+        table.addShot(shot("2", "3"));
+        table.addShot(shot("2", "4"));
+        assertEquals(4, table.getShots().size());
+        assertEquals(2, table.getDuplicateShots().size());
+    }
+
+    @Test
+    public void listChanges() {
+        Cave cave = new Cave("Test");
+        cave.addSurvey(survey("A"));
+        cave.addSurvey(survey("B"));
+        Survey c = survey("C");
+        cave.getSurveys().set(1, c);
+        assertSame(c, cave.getSurvey("C"));
+        assertNull(cave.getSurvey("B"));
+        cave.addSurvey(survey("B"));
+        assertTrue(cave.getDuplicateSurveys().isEmpty());
+
+        // same size as before
+        Survey a = cave.getSurveys().remove(0);
+        cave.getSurveys().add(survey("D"));
+        assertNull(cave.getSurvey("A"));
+        cave.addSurvey(survey("A"));
+        assertTrue(cave.getDuplicateSurveys().isEmpty());
+        // the removed survey does not come back with a new name
+        a.setName("E");
+        assertNull(cave.getSurvey("E"));
+
+        Survey list = new Survey();
+        list.addShot(shot("1", "2"));
+        list.addShot(shot("2", "3"));
+        list.getShots().set(0, shot("4", "5"));
+        list.addShot(shot("1", "2"));
+        list.getShots().remove(0);
+        list.getShots().add(shot("6", "7"));
+        list.addShot(shot("4", "5"));
+        list.addShot(shot("6", "7"));
+        assertEquals(4, list.getShots().size());
+        assertEquals(1, list.getDuplicateShots().size());
+        assertEquals("6", list.getDuplicateShots().get(0).getFrom());
+    }
+
+    @Test
+    public void detached() {
+        Shot shot = shot("1", "2");
+        assertNull(shot.getStations());
+        assertEquals("1", shot.getFrom());
+        assertEquals(Stations.NONE, shot.getFromId());
+        Connection conn = new Connection("2", "A", "2", "B");
+        assertNull(conn.getStations());
+
+        Cave cave = new Cave("Test");
+        Survey a = survey("A");
+        a.addShot(shot);
+        cave.addSurvey(a);
+        cave.addConnection(conn);
+        assertSame(cave.getStations(), shot.getStations());
+        assertEquals("2", cave.getStations().getName(shot.getToId()));
+        assertSame(cave.getStations(), conn.getStations());
+        assertEquals(shot.getToId(), conn.getThisStationId());
+        assertTrue(cave.getConnections().contains(new Connection("2", "A", "2", "B")));
+        assertEquals(new Connection("2", "A", "2", "B").hashCode(), conn.hashCode());
+    }
+
+    private static Survey survey(String name) {
+        Survey survey = new Survey();
+        survey.setName(name);
+        return survey;
+    }
+
+    private static Shot shot(String from, String to) {
+        Shot shot = new Shot();
+        shot.setFrom(from);
+        shot.setTo(to);
+        return shot;
+    }
+}
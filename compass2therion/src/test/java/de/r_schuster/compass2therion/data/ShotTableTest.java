@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class ShotTableTest {
+
+    @Test
+    public void values() {
+        Stations stations = new Stations();
+        ShotTable table = new ShotTable(stations, 1);
+        for (int i = 0; i < 100; i++) {
+            int row = table.add(stations.intern("A" + i), stations.intern("A" + (i + 1)));
+            table.setHundredths(ShotTable.Column.LENGTH, row, i * 100 + 25);
+        }
+        assertEquals(100, table.size());
+        assertEquals(new BigDecimal("12.25"), table.getDecimal(ShotTable.Column.LENGTH, 12));
+        assertEquals(1225, table.getHundredths(ShotTable.Column.LENGTH, 12));
+        assertNull(table.getDecimal(ShotTable.Column.AZIMUT, 12));
+        assertEquals(ShotTable.NULL, table.getHundredths(ShotTable.Column.AZIMUT, 12));
+
+        table.setPassage(ShotTable.Column.LEFT, 0);
+        assertSame(BigDecimal.ZERO, table.getDecimal(ShotTable.Column.LEFT, 0));
+        assertEquals(ShotTable.PASSAGE, table.getHundredths(ShotTable.Column.LEFT, 0));
+        table.setDecimal(ShotTable.Column.RIGHT, 0, new BigDecimal("0"));
+        assertEquals(ShotTable.PASSAGE, table.getHundredths(ShotTable.Column.RIGHT, 0));
+        table.setDecimal(ShotTable.Column.RIGHT, 0, new BigDecimal("0.00"));
+        assertEquals(0, table.getHundredths(ShotTable.Column.RIGHT, 0));
+
+        BigDecimal[] others = {new BigDecimal("1.234"), new BigDecimal("7"), new BigDecimal("123456789012.34"), new BigDecimal("-0.01")};
+        for (BigDecimal other : others) {
+            table.setDecimal(ShotTable.Column.UP, 1, other);
+            assertEquals(other, table.getDecimal(ShotTable.Column.UP, 1));
+        }
+        table.setHundredths(ShotTable.Column.DOWN, 2, 12345678901234L);
+        assertEquals(12345678901234L, table.getHundredths(ShotTable.Column.DOWN, 2));
+        assertEquals(new BigDecimal("123456789012.34"), table.getDecimal(ShotTable.Column.DOWN, 2));
+
+        double[] down = table.getDoubles(ShotTable.Column.DOWN);
+        assertEquals(100, down.length);
+        assertEquals(123456789012.34, down[2], 1e-3);
+        assertTrue(Double.isNaN(down[3]));
+        assertEquals(0, table.getDoubles(ShotTable.Column.LEFT)[0]);
+        assertEquals(12.25, table.getDoubles(ShotTable.Column.LENGTH)[12]);
+
+        table.setComment(3, "Stufe");
+        assertEquals("Stufe", table.getComment(3));
+        assertNull(table.getComment(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.getFrom(100));
+    }
+
+    @Test
+    public void views() {
+        Survey survey = new Survey(new ShotTable(new Stations()));
+        Shot shot = new Shot();
+        shot.setFrom("1");
+        shot.setTo("2");
+        shot.setLength(new BigDecimal("3.50"));
+        shot.setComment("Gang");
+        survey.addShot(shot);
+
+        Shot duplicate = new Shot();
+        duplicate.setFrom("1");
+        duplicate.setTo("2");
+        survey.addShot(duplicate);
+        assertEquals(1, survey.getShotTable().size());
+
+        Shot view = survey.getShots().get(0);
+        assertEquals(shot, view);
+        assertEquals("1", view.getFrom());
+        assertEquals(new BigDecimal("3.50"), view.getLength());
+        assertEquals("Gang", view.getComment());
+        assertSame(survey.getStations(), view.getStations());
+
+        view.setAzimut(new BigDecimal("120.00"));
+        view.setTo("3");
+        assertEquals(12000, survey.getShotTable().getHundredths(ShotTable.Column.AZIMUT, 0));
+        assertEquals("3", survey.getShots().get(0).getTo());
+
+        Cave cave = new Cave("Test");
+        cave.getStations().intern("X");
+        cave.addSurvey(survey);
+        assertSame(cave.getStations(), survey.getShotTable().getStations());
+        assertEquals("1", survey.getShots().get(0).getFrom());
+        assertEquals("3", survey.getShots().get(0).getTo());
+    }
+
+    @Test
+    public void list() {
+        Survey survey = new Survey(new ShotTable(new Stations()));
+        for (int i = 0; i < 4; i++) {
+            Shot shot = new Shot();
+            shot.setFrom("A" + i);
+            shot.setTo("A" + (i + 1));
+            shot.setLength(new BigDecimal(i + ".234"));
+            shot.setComment("Shot " + i);
+            survey.getShots().add(shot);
+        }
+        List<Shot> shots = survey.getShots();
+
+        // added shots are copied
+        Shot added = new Shot();
+        added.setFrom("A4");
+        added.setTo("A5");
+        shots.add(added);
+        added.setLength(new BigDecimal("1.00"));
+        assertNull(shots.get(4).getLength());
+        assertNotSame(added, shots.get(4));
+
+        Shot view = shots.get(2);
+        Shot removed = shots.remove(1);
+        assertEquals("A1", removed.getFrom());
+        assertEquals(new BigDecimal("1.234"), removed.getLength());
+        assertEquals("Shot 1", removed.getComment());
+        assertEquals(4, shots.size());
+        assertEquals("A2", shots.get(1).getFrom());
+        assertEquals(new BigDecimal("2.234"), shots.get(1).getLength());
+        assertEquals("Shot 2", shots.get(1).getComment());
+        assertEquals(new BigDecimal("3.234"), shots.get(2).getLength());
+        assertEquals("Shot 3", shots.get(2).getComment());
+        assertNull(shots.get(3).getComment());
+        // views refer to rows
+        assertEquals("A3", view.getFrom());
+        assertEquals(0, survey.getShotTable().indexOf(survey.getStations().find("A0"), survey.getStations().find("A1")));
+        assertEquals(1, survey.getShotTable().indexOf(survey.getStations().find("A2"), survey.getStations().find("A3")));
+
+        Shot replaced = shots.set(0, added);
+        assertEquals("A0", replaced.getFrom());
+        assertEquals(new BigDecimal("0.234"), replaced.getLength());
+        assertEquals("A4", shots.get(0).getFrom());
+        assertEquals(new BigDecimal("1.00"), shots.get(0).getLength());
+        assertNull(shots.get(0).getComment());
+        assertEquals(-1, survey.getShotTable().indexOf(survey.getStations().find("A0"), survey.getStations().find("A1")));
+
+        shots.set(1, shots.get(2));
+        assertEquals(shots.get(2), shots.get(1));
+        shots.clear();
+        assertTrue(shots.isEmpty());
+    }
+}
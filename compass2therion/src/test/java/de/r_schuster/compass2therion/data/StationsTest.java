@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.data;
+
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class StationsTest {
+
+    @Test
+    public void intern() {
+        Stations stations = new Stations();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, stations.intern("A" + i));
+        }
+        assertEquals(1000, stations.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, stations.intern("A" + i));
+            assertEquals(i, stations.find("A" + i));
+            assertEquals("A" + i, stations.getName(i));
+        }
+        assertEquals(Stations.NONE, stations.find("B1"));
+        assertEquals(Stations.NONE, stations.intern(null));
+        assertNull(stations.getName(Stations.NONE));
+        assertThrows(IndexOutOfBoundsException.class, () -> stations.getName(1000));
+    }
+
+    @Test
+    public void rename() {
+        Stations stations = new Stations();
+        for (int i = 0; i < 100; i++) {
+            stations.intern("A" + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            stations.rename(i, "B" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            String name = (i % 2 == 0 ? "B" : "A") + i;
+            assertEquals(name, stations.getName(i));
+            assertEquals(i, stations.find(name));
+        }
+        assertEquals(Stations.NONE, stations.find("A0"));
+        assertEquals(100, stations.intern("A0"));
+        assertThrows(SurveyException.class, () -> stations.rename(1, "B2"));
+    }
+
+    @Test
+    public void release() {
+        Stations stations = new Stations();
+        for (int i = 0; i < 100; i++) {
+            stations.intern("A" + i);
+        }
+        stations.release(2);
+        assertNull(stations.getName(2));
+        assertEquals(Stations.NONE, stations.find("A2"));
+        stations.rename(1, "A2");
+        assertEquals(1, stations.find("A2"));
+        assertThrows(SurveyException.class, () -> stations.rename(2, "B2"));
+        for (int i = 0; i < 100; i++) {
+            stations.intern("B" + i);
+        }
+        assertEquals(200, stations.size());
+        assertEquals(1, stations.find("A2"));
+        assertEquals(3, stations.find("A3"));
+    }
+
+    @Test
+    public void sharedNames() {
+        Cave cave = new Cave("Test");
+        Survey survey = new Survey();
+        Shot shot = new Shot();
+        shot.setFrom("1");
+        shot.setTo("2");
+        survey.setName("A");
+        survey.addShot(shot);
+        assertSame(survey.getStations(), shot.getStations());
+
+        cave.addSurvey(survey);
+        assertSame(cave.getStations(), survey.getStations());
+        assertSame(cave.getStations(), shot.getStations());
+        assertEquals("1", shot.getFrom());
+        assertEquals("2", shot.getTo());
+
+        Connection conn = new Connection("2", "A", "2", "B");
+        cave.addConnection(conn);
+        assertSame(cave.getStations(), conn.getStations());
+        assertEquals(shot.getToId(), conn.getThisStationId());
+        assertEquals(new Connection("2", "A", "2", "B"), conn);
+        assertEquals(new Connection("2", "A", "2", "B").hashCode(), conn.hashCode());
+
+        cave.getStations().rename(shot.getToId(), "3");
+        assertEquals("3", shot.getTo());
+        assertEquals("3", conn.getOtherStation());
+    }
+}
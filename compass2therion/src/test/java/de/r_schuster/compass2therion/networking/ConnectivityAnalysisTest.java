@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import de.r_schuster.compass2therion.parser.CompassParserTest;
+import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class ConnectivityAnalysisTest {
+
+    @Test
+    public void connected() throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
+        SurveyParser parser = new CompassParser();
+        Cave cave = parser.parse("Dreieingangshöhle", is, Charset.forName("Cp1252"), new FlatNetworking());
+        List<NetworkComponent> components = new ConnectivityAnalysis().analyze(cave);
+        assertEquals(1, components.size());
+        assertEquals(cave.getSurveys().size(), components.get(0).getSurveys().size());
+    }
+
+    @Test
+    public void islands() {
+        Cave cave = new Cave("Islands");
+        cave.addSurvey(survey("A", "1", "2", "2", "3"));
+        cave.addSurvey(survey("B", "3", "4"));
+        // not connected among its own shots
+        cave.addSurvey(survey("C", "10", "11", "20", "21"));
+        cave.addSurvey(survey("D", "21", "22"));
+        cave.addSurvey(new Survey());
+        cave.getSurveys().get(4).setName("E");
+
+        for (Networking nw : new Networking[]{new FlatNetworking(), new MinimalNetworking()}) {
+            cave.getConnections().clear();
+            nw.networking(cave);
+            List<NetworkComponent> components = new ConnectivityAnalysis().analyze(cave);
+            assertEquals(4, components.size());
+
+            assertEquals(Arrays.asList("A", "B"), components.get(0).getSurveys());
+            assertEquals(5, components.get(0).getStationCount());
+            assertEquals(3, components.get(0).getShotCount());
+            assertEquals(new BigDecimal("3.00"), components.get(0).getLength());
+
+            assertEquals(Arrays.asList("C"), components.get(1).getSurveys());
+            assertEquals(1, components.get(1).getShotCount());
+
+            assertEquals(Arrays.asList("C", "D"), components.get(2).getSurveys());
+            assertEquals(4, components.get(2).getStationCount());
+            assertEquals(2, components.get(2).getShotCount());
+
+            assertEquals(Arrays.asList("E"), components.get(3).getSurveys());
+            assertEquals(0, components.get(3).getShotCount());
+        }
+    }
+
+    @Test
+    public void feetAndMetres() {
+        Cave cave = new Cave("Units");
+        Survey feet = survey("A", "1", "2", "2", "3");
+        feet.setLengthUnit(LengthUnits.FEET_DECIMAL);
+        cave.addSurvey(feet);
+        Survey metres = survey("B", "3", "4");
+        metres.setLengthUnit(LengthUnits.METRES);
+        cave.addSurvey(metres);
+        new FlatNetworking().networking(cave);
+
+        List<NetworkComponent> components = new ConnectivityAnalysis().analyze(cave);
+        assertEquals(1, components.size());
+        assertEquals(3, components.get(0).getShotCount());
+        // 2 ft + 1 m
+        assertEquals(new BigDecimal("1.61"), components.get(0).getLength());
+    }
+
+    private static Survey survey(String name, String... stations) {
+        Survey survey = new Survey();
+        survey.setName(name);
+        for (int i = 0; i < stations.length; i += 2) {
+            Shot shot = new Shot();
+            shot.setFrom(stations[i]);
+            shot.setTo(stations[i + 1]);
+            shot.setLength(new BigDecimal("1.00"));
+            survey.addShot(shot);
+        }
+        return survey;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class IncrementalNetworkingTest {
+
+    @Test
+    public void sameConnectionsAsFlat() {
+        Cave flat = IndexedNetworkingTest.randomCave(new ArrayList<>());
+        Cave incremental = IndexedNetworkingTest.randomCave(new ArrayList<>());
+        new FlatNetworking().networking(flat);
+        new IncrementalNetworking().networking(incremental);
+        assertEquals(undirected(flat.getConnections()), undirected(incremental.getConnections()));
+    }
+
+    @Test
+    public void changes() {
+        Cave cave = IndexedNetworkingTest.randomCave(new ArrayList<>());
+        IncrementalNetworking nw = new IncrementalNetworking();
+        nw.networking(cave);
+        int surveys = cave.getSurveys().size();
+
+        assertTrue(nw.addSurvey(survey("New", "P10", "P11", "P500")));
+        assertFalse(nw.addSurvey(survey("New", "P1")));
+        assertSame(cave.getSurveys().get(3), nw.removeSurvey("S3"));
+        assertNull(nw.removeSurvey("S3"));
+        Survey replaced = cave.getSurveys().get(10);
+        assertSame(replaced, nw.replaceSurvey(survey(replaced.getName(), "P500", "P501")));
+        assertNull(nw.replaceSurvey(survey("Other", "P501", "P502")));
+        assertEquals(surveys + 1, cave.getSurveys().size());
+        assertEquals("Other", cave.getSurveys().get(surveys).getName());
+
+        // same as networking the changed cave from scratch
+        Cave fresh = new Cave("Fresh");
+        for (Survey survey : cave.getSurveys()) {
+            Survey copy = new Survey();
+            copy.setName(survey.getName());
+            for (Shot shot : survey.getShots()) {
+                Shot s = new Shot();
+                s.setFrom(shot.getFrom());
+                s.setTo(shot.getTo());
+                copy.addShot(s);
+            }
+            fresh.addSurvey(copy);
+        }
+        new IncrementalNetworking().networking(fresh);
+        assertEquals(strings(fresh.getConnections()), strings(cave.getConnections()));
+        assertTrue(strings(cave.getConnections()).contains(new Connection("P500", replaced.getName(), "P500", "New").toString()));
+    }
+
+    @Test
+    public void alreadyNetworked() {
+        Cave fresh = IndexedNetworkingTest.randomCave(new ArrayList<>());
+        new IncrementalNetworking().networking(fresh);
+
+        Cave cave = IndexedNetworkingTest.randomCave(new ArrayList<>());
+        new FlatNetworking().networking(cave);
+        IncrementalNetworking nw = new IncrementalNetworking();
+        nw.networking(cave);
+        assertEquals(strings(fresh.getConnections()), strings(cave.getConnections()));
+        nw.networking(cave);
+        assertEquals(strings(fresh.getConnections()), strings(cave.getConnections()));
+
+        // no reverse oriented connection is left behind
+        nw.removeSurvey("S3");
+        for (Connection conn : cave.getConnections()) {
+            assertNotEquals("S3", conn.getThisSurvey());
+            assertNotEquals("S3", conn.getOtherSurvey());
+        }
+    }
+
+    @Test
+    public void renamed() {
+        Cave cave = new Cave("Renamed");
+        cave.addSurvey(survey("A", "1", "2"));
+        cave.addSurvey(survey("B", "2", "3"));
+        cave.addSurvey(survey("C", "3", "4"));
+        IncrementalNetworking nw = new IncrementalNetworking();
+        nw.networking(cave);
+        cave.getSurveys().get(1).setName("B2");
+
+        assertEquals("B2", nw.removeSurvey("B2").getName());
+        assertTrue(cave.getConnections().isEmpty());
+        nw.addSurvey(survey("D", "2", "4"));
+        cave.getSurveys().get(0).setName("A2");
+        assertNotNull(nw.replaceSurvey(survey("A2", "1", "5")));
+        assertEquals(Collections.singleton(new Connection("4", "C", "4", "D").toString()), strings(cave.getConnections()));
+    }
+
+    @Test
+    public void notIndexed() {
+        Cave cave = new Cave("Not indexed");
+        cave.addSurvey(survey("A", "1", "2"));
+        IncrementalNetworking nw = new IncrementalNetworking();
+        nw.networking(cave);
+        cave.addSurvey(survey("B", "2", "3"));
+        assertThrows(SurveyException.class, () -> nw.removeSurvey("B"));
+        assertThrows(SurveyException.class, () -> nw.replaceSurvey(survey("B", "3", "4")));
+        assertEquals(2, cave.getSurveys().size());
+        assertNull(nw.removeSurvey("X"));
+    }
+
+    @Test
+    public void noCave() {
+        assertThrows(IllegalStateException.class, () -> new IncrementalNetworking().removeSurvey("A"));
+    }
+
+    private static Survey survey(String name, String... stations) {
+        Survey survey = new Survey();
+        survey.setName(name);
+        for (int i = 0; i + 1 < stations.length; i++) {
+            Shot shot = new Shot();
+            shot.setFrom(stations[i]);
+            shot.setTo(stations[i + 1]);
+            survey.addShot(shot);
+        }
+        return survey;
+    }
+
+    private static Set<String> strings(Set<Connection> connections) {
+        Set<String> strings = new HashSet<>();
+        for (Connection conn : connections) {
+            strings.add(conn.toString());
+        }
+        return strings;
+    }
+
+    private static Set<List<String>> undirected(Set<Connection> connections) {
+        Set<List<String>> undirected = new HashSet<>();
+        for (Connection conn : connections) {
+            List<String> pair = new ArrayList<>();
+            pair.add(conn.getThisStation());
+            if (conn.getThisSurvey().compareTo(conn.getOtherSurvey()) < 0) {
+                pair.add(conn.getThisSurvey());
+                pair.add(conn.getOtherSurvey());
+            } else {
+                pair.add(conn.getOtherSurvey());
+                pair.add(conn.getThisSurvey());
+            }
+            undirected.add(pair);
+        }
+        return undirected;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import de.r_schuster.compass2therion.parser.CompassParserTest;
+import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class IndexedNetworkingTest {
+
+    @Test
+    public void sameAsFlat() throws IOException {
+        String[] files = {"/networking/no_connection.dat", "/networking/one_connection.dat",
+            "/networking/three_connection.dat", "/networking/six_connection.dat", "/parser/dreieingangshoehle.dat"};
+        for (String file : files) {
+            Cave flat = parse(file, new FlatNetworking());
+            Cave indexed = parse(file, new IndexedNetworking());
+            assertEquals(new ArrayList<>(flat.getConnections()), new ArrayList<>(indexed.getConnections()), file);
+        }
+    }
+
+    @Test
+    public void manySurveys() {
+        // the order of colliding connections in a hash set is not fixed,
+        // so the order they are added in is compared
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        Cave flat = randomCave(expected);
+        Cave indexed = randomCave(actual);
+        new FlatNetworking().networking(flat);
+        new IndexedNetworking().networking(indexed);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+        assertEquals(flat.getConnections(), indexed.getConnections());
+    }
+
+    private static Cave parse(String file, Networking nw) throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream(file);
+        SurveyParser parser = new CompassParser();
+        return parser.parse("Networking", is, Charset.forName("Cp1252"), nw);
+    }
+
+    // surveys along a line of stations, overlapping their neighbours
+    static Cave randomCave(List<String> added) {
+        Random random = new Random(42);
+        Cave cave = new Cave("Random") {
+            @Override
+            public void addConnection(Connection conn) {
+                added.add(conn.toString());
+                super.addConnection(conn);
+            }
+        };
+        for (int s = 0; s < 300; s++) {
+            Survey survey = new Survey();
+            survey.setName("S" + s);
+            int start = random.nextInt(1000);
+            for (int i = 0; i < 10; i++) {
+                Shot shot = new Shot();
+                shot.setFrom("P" + (start + i));
+                // splays without target station
+                shot.setTo(random.nextInt(5) == 0 ? null : "P" + (start + i + 1));
+                survey.addShot(shot);
+            }
+            cave.addSurvey(survey);
+        }
+        return cave;
+    }
+}
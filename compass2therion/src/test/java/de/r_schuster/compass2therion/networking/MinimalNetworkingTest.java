@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import de.r_schuster.compass2therion.parser.CompassParserTest;
+import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class MinimalNetworkingTest {
+
+    @Test
+    public void threeConnection() throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream("/networking/three_connection.dat");
+        SurveyParser parser = new CompassParser();
+        Cave cave = parser.parse("Networking", is, Charset.forName("Cp1252"), new MinimalNetworking());
+        // three surveys share station 1
+        assertEquals(2, cave.getConnections().size());
+    }
+
+    @Test
+    public void oneConnectionLessPerStation() {
+        List<String> flatAdded = new ArrayList<>();
+        List<String> minimalAdded = new ArrayList<>();
+        Cave flat = IndexedNetworkingTest.randomCave(flatAdded);
+        Cave minimal = IndexedNetworkingTest.randomCave(minimalAdded);
+        new FlatNetworking().networking(flat);
+        new MinimalNetworking().networking(minimal);
+
+        assertTrue(flat.getConnections().containsAll(minimal.getConnections()));
+        // same order as the flat connections
+        List<String> subsequence = new ArrayList<>(flatAdded);
+        subsequence.retainAll(new HashSet<>(minimalAdded));
+        assertEquals(subsequence, minimalAdded);
+
+        // the surveys of each station are still connected
+        Map<String, Set<String>> flatSurveys = surveysByStation(flat.getConnections());
+        Map<String, Set<String>> minimalSurveys = surveysByStation(minimal.getConnections());
+        assertEquals(flatSurveys, minimalSurveys);
+        int expected = 0;
+        for (Set<String> surveys : flatSurveys.values()) {
+            expected += surveys.size() - 1;
+        }
+        assertEquals(expected, minimal.getConnections().size());
+        assertTrue(expected < flat.getConnections().size());
+
+        List<String> parallelAdded = new ArrayList<>();
+        new MinimalNetworking(true).networking(IndexedNetworkingTest.randomCave(parallelAdded));
+        assertEquals(minimalAdded, parallelAdded);
+    }
+
+    private static Map<String, Set<String>> surveysByStation(Set<Connection> connections) {
+        Map<String, Set<String>> surveys = new HashMap<>();
+        for (Connection conn : connections) {
+            Set<String> station = surveys.computeIfAbsent(conn.getThisStation(), s -> new HashSet<>());
+            station.add(conn.getThisSurvey());
+            station.add(conn.getOtherSurvey());
+        }
+        return surveys;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.networking;
+
+import de.r_schuster.compass2therion.data.Cave;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class ParallelNetworkingTest {
+
+    @Test
+    public void sameAsFlat() {
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        Cave flat = IndexedNetworkingTest.randomCave(expected);
+        Cave parallel = IndexedNetworkingTest.randomCave(actual);
+        new FlatNetworking().networking(flat);
+        new ParallelNetworking().networking(parallel);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void repeatable() {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        new ParallelNetworking().networking(IndexedNetworkingTest.randomCave(first));
+        new ParallelNetworking().networking(IndexedNetworkingTest.randomCave(second));
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void postingsInRanges() {
+        Random random = new Random(7);
+        int[][] stationsBySurvey = new int[50][];
+        for (int survey = 0; survey < stationsBySurvey.length; survey++) {
+            stationsBySurvey[survey] = random.ints(random.nextInt(20), -1, 40).distinct().sorted().toArray();
+        }
+        Postings expected = Postings.of(stationsBySurvey, 40, 1);
+        for (int ranges : new int[]{2, 3, 7, 50, 100}) {
+            Postings postings = Postings.of(stationsBySurvey, 40, ranges);
+            assertEquals(expected.stations(), postings.stations());
+            for (int station = 0; station < expected.stations(); station++) {
+                assertEquals(expected.start(station), postings.start(station));
+                assertEquals(expected.end(station), postings.end(station));
+                for (int i = expected.start(station); i < expected.end(station); i++) {
+                    assertEquals(expected.survey(i), postings.survey(i));
+                }
+            }
+        }
+        // the surveys of a station are in ascending order
+        for (int station = 0; station < expected.stations(); station++) {
+            for (int i = expected.start(station) + 1; i < expected.end(station); i++) {
+                assertTrue(expected.survey(i - 1) < expected.survey(i));
+            }
+        }
+        assertEquals(0, Postings.of(new int[0][], 40, 4).end(40));
+    }
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.charset.Charset;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,4 +76,36 @@ public class AbstractSurveyParserTest {
         metres = parser.decimalFeetToMetres(feet);
         assertEquals(new BigDecimal("6.82"), metres);
     }
+
+    @Test
+    public void fixedPoint() {
+        // the fixed point variants must give the same results as the BigDecimal ones
+        for (long h = -100000; h <= 100000; h++) {
+            BigDecimal bd = BigDecimal.valueOf(h, 2);
+            assertEquals(parser.degreeToGradians(bd), BigDecimal.valueOf(parser.degreeToGradians(h), 2));
+            assertEquals(parser.decimalFeetToMetres(bd), BigDecimal.valueOf(parser.decimalFeetToMetres(h), 2));
+        }
+        for (long h = -8999; h <= 8999; h++) {
+            BigDecimal bd = BigDecimal.valueOf(h, 2);
+            assertEquals(parser.degreeToPercent(bd), BigDecimal.valueOf(parser.degreeToPercent(h), 2));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long h = random.nextLong() % 100000000000L;
+            BigDecimal bd = BigDecimal.valueOf(h, 2);
+            assertEquals(parser.degreeToGradians(bd), BigDecimal.valueOf(parser.degreeToGradians(h), 2));
+            assertEquals(parser.decimalFeetToMetres(bd), BigDecimal.valueOf(parser.decimalFeetToMetres(h), 2));
+        }
+    }
+
+    @Test
+    public void overflow() {
+        // 16 digits are read in hundredths by the tokenizer
+        long h = 9999999999999999L;
+        assertEquals(AbstractSurveyParser.NOT_HUNDREDTHS, parser.degreeToGradians(h));
+        assertEquals(AbstractSurveyParser.NOT_HUNDREDTHS, parser.decimalFeetToMetres(-h));
+        long max = Long.MAX_VALUE / 3048;
+        assertEquals(parser.decimalFeetToMetres(BigDecimal.valueOf(max, 2)), BigDecimal.valueOf(parser.decimalFeetToMetres(max), 2));
+        assertEquals(AbstractSurveyParser.NOT_HUNDREDTHS, parser.decimalFeetToMetres(max + 1));
+    }
 }
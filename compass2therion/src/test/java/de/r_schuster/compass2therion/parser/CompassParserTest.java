@@ -31,8 +31,18 @@ import de.r_schuster.compass2therion.networking.Networking;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -288,6 +298,46 @@ public class CompassParserTest {
         assertEquals(new BigDecimal("10.83"), survey.getShots().get(0).getLeft());
     }
 
+    @Test
+    public void verticalPercent() throws IOException {
+        InputStream is = CompassParserTest.class.getResourceAsStream("/parser/percent.dat");
+        SurveyParser parser = new CompassParser();
+        Cave cave = parser.parse("Test Hole", is, Charset.forName("Cp1252"), createNetworking());
+        Survey survey = cave.getSurveys().get(0);
+        assertEquals(InclinationUnits.PERCENT, survey.getInclinationUnit());
+        assertEquals(4, survey.getShots().size());
+        BigDecimal up = BigDecimal.valueOf(Math.tan(Math.toRadians(90)) * 100).setScale(2, RoundingMode.HALF_UP);
+        assertEquals(up, survey.getShots().get(0).getInclination());
+        BigDecimal down = BigDecimal.valueOf(Math.tan(Math.toRadians(-90)) * 100).setScale(2, RoundingMode.HALF_UP);
+        assertEquals(down, survey.getShots().get(1).getInclination());
+        // converted from the numbers as they are written, rounded once
+        assertEquals(new BigDecimal("100.01"), survey.getShots().get(2).getInclination());
+        assertEquals(new BigDecimal("3.06"), survey.getShots().get(3).getLength());
+        assertEquals(new BigDecimal("17.63"), survey.getShots().get(3).getInclination());
+    }
+
+    @Test
+    public void bigNumbers() throws IOException {
+        // in hundredths the conversions would overflow a long
+        String data = "Cave\r\nSURVEY NAME: A\r\nSURVEY DATE: 1 2 2021\r\nSURVEY TEAM:\r\nMe\r\n"
+                + "DECLINATION: 0.00  FORMAT: RMMRLRUDLDAdaNF\r\n\r\nFROM TO LENGTH BEARING INC LEFT UP DOWN RIGHT\r\n\r\n"
+                + "  1  2  99999999999999.99  99999999999999.99  -99999999999999.99  1.00  2.00  3.00  99999999999999.99\r\n"
+                + "  2  3  10.00  90.00  -5.00  1.00  2.00  3.00  4.00\r\n\f\r\n\u001A";
+        CompassParser parser = new CompassParser();
+        Cave cave = parser.parse("Test", ByteBuffer.wrap(data.getBytes("Cp1252")), Charset.forName("Cp1252"), createNetworking());
+        Shot shot = cave.getSurveys().get(0).getShots().get(0);
+        BigDecimal big = new BigDecimal("99999999999999.99");
+        assertEquals(parser.decimalFeetToMetres(big), shot.getLength());
+        assertEquals(parser.degreeToGradians(big), shot.getAzimut());
+        assertEquals(parser.degreeToGradians(big.negate()), shot.getInclination());
+        assertEquals(parser.decimalFeetToMetres(big), shot.getRight());
+        assertEquals(new BigDecimal("0.30"), shot.getLeft());
+
+        shot = cave.getSurveys().get(0).getShots().get(1);
+        assertEquals(new BigDecimal("3.05"), shot.getLength());
+        assertEquals(new BigDecimal("100.00"), shot.getAzimut());
+    }
+
     @Test
     public void incompleteDate() throws IOException {
         InputStream is = CompassParserTest.class.getResourceAsStream("/parser/brokendate.dat");
@@ -309,6 +359,209 @@ public class CompassParserTest {
         assertEquals(new SurveyDate(0, 0, 0), cave.getSurveys().get(4).getDate());
     }
 
+    @Test
+    public void mappedFile() throws IOException, URISyntaxException {
+        Path path = Paths.get(CompassParserTest.class.getResource("/parser/kleine_scheuer.dat").toURI());
+        SurveyParser parser = new CompassParser();
+        Cave mapped = parser.parse("Kleine Scheuer", path, Charset.forName("Cp1252"), createNetworking());
+        Cave streamed;
+        try (InputStream is = CompassParserTest.class.getResourceAsStream("/parser/kleine_scheuer.dat")) {
+            streamed = parser.parse("Kleine Scheuer", is, Charset.forName("Cp1252"), createNetworking());
+        }
+        assertSameSurveys(streamed, mapped);
+        assertEquals("Höhle", mapped.getSurveys().get(0).getCaveName());
+        assertEquals("Häberle", mapped.getSurveys().get(1).getCavers().get(0));
+    }
+
+    @Test
+    public void byteBuffer() throws IOException {
+        String data = "Cave\r\nSURVEY NAME: A\r\nSURVEY DATE: 1 2 2021\r\nSURVEY TEAM:\r\nMe\r\n"
+                + "DECLINATION: 0.00\r\n\r\nFROM TO LENGTH BEARING INC LEFT UP DOWN RIGHT\r\n\r\n"
+                + "  1  2  10.00  90.00  -5.00  1.00  2.00  3.00  4.00  Ümlaut comment\r\n\f\r\n\u001A";
+        CompassParser parser = new CompassParser();
+        Cave cave = parser.parse("Test", ByteBuffer.wrap(data.getBytes("Cp1252")), Charset.forName("Cp1252"), createNetworking());
+        assertEquals(1, cave.getSurveys().size());
+        Shot shot = cave.getSurveys().get(0).getShots().get(0);
+        assertEquals("1", shot.getFrom());
+        assertEquals("2", shot.getTo());
+        assertEquals(new BigDecimal("10.00"), shot.getLength());
+        assertEquals(new BigDecimal("-5.00"), shot.getInclination());
+        assertEquals("Ümlaut comment", shot.getComment());
+
+        // charsets which are not ASCII compatible are decoded first
+        Cave utf16 = parser.parse("Test", ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_16)), StandardCharsets.UTF_16, createNetworking());
+        assertSameSurveys(cave, utf16);
+    }
+
+    @Test
+    public void parallel() throws IOException, URISyntaxException {
+        for (String file : new String[]{"/parser/dreieingangshoehle.dat", "/parser/kleine_scheuer.dat", "/parser/dates.dat"}) {
+            Path path = Paths.get(CompassParserTest.class.getResource(file).toURI());
+            Cave sequential = new CompassParser().parse("Test", path, Charset.forName("Cp1252"), createNetworking());
+            Cave parallel = new CompassParser(true).parse("Test", path, Charset.forName("Cp1252"), createNetworking());
+            assertSameSurveys(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void parallelInvalid() throws IOException, URISyntaxException {
+        Path path = Paths.get(CompassParserTest.class.getResource("/parser/invalid.dat").toURI());
+        try {
+            new CompassParser(true).parse("Test Hole", path, Charset.forName("Cp1252"), createNetworking());
+            fail("Needs to throw an exception");
+        } catch (SurveyException e) {
+            assertTrue(e.getMessage().contains("Error while reading line 6"));
+        }
+    }
+
+    @Test
+    public void surveyStream() throws IOException, URISyntaxException {
+        CompassParser parser = new CompassParser();
+        for (String file : new String[]{"/parser/dreieingangshoehle.dat", "/parser/kleine_scheuer.dat", "/parser/dates.dat"}) {
+            Path path = Paths.get(CompassParserTest.class.getResource(file).toURI());
+            Cave cave = parser.parse("Test", path, Charset.forName("Cp1252"), createNetworking());
+            try (Stream<Survey> surveys = parser.surveys(path, Charset.forName("Cp1252"))) {
+                assertSameSurveys(cave.getSurveys(), surveys.collect(Collectors.toList()));
+            }
+            try (InputStream is = CompassParserTest.class.getResourceAsStream(file)) {
+                assertSameSurveys(cave.getSurveys(), parser.surveys(is, Charset.forName("Cp1252")).collect(Collectors.toList()));
+            }
+        }
+
+        try (InputStream is = CompassParserTest.class.getResourceAsStream("/parser/kleine_scheuer.dat")) {
+            Survey first = parser.surveys(is, Charset.forName("Cp1252")).findFirst().get();
+            assertEquals("10.1", first.getName());
+        }
+    }
+
+    @Test
+    public void parallelSurveyStream() throws IOException {
+        byte[] bytes;
+        try (InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat")) {
+            bytes = is.readAllBytes();
+        }
+        // without the trailing SUB, big enough to be split several times
+        int length = bytes.length - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(length * 20);
+        for (int i = 0; i < 20; i++) {
+            buffer.put(bytes, 0, length);
+        }
+        buffer.flip();
+
+        CompassParser parser = new CompassParser();
+        List<Survey> sequential = parser.surveys(buffer, Charset.forName("Cp1252")).collect(Collectors.toList());
+        List<Survey> parallel = parser.surveys(buffer, Charset.forName("Cp1252")).parallel().collect(Collectors.toList());
+        assertEquals(20 * parser.parse("Test", buffer.slice().limit(length), Charset.forName("Cp1252"), createNetworking()).getSurveys().size(), sequential.size());
+        assertSameSurveys(sequential, parallel);
+    }
+
+    @Test
+    public void invalidSurveyStream() throws IOException, URISyntaxException {
+        Path path = Paths.get(CompassParserTest.class.getResource("/parser/invalid.dat").toURI());
+        try (Stream<Survey> surveys = new CompassParser().surveys(path, Charset.forName("Cp1252"))) {
+            surveys.forEach(s -> {
+            });
+            fail("Needs to throw an exception");
+        } catch (SurveyException e) {
+            assertTrue(e.getMessage().contains("Error while reading line 6"));
+        }
+    }
+
+    @Test
+    public void index() throws IOException {
+        byte[] bytes;
+        try (InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat")) {
+            bytes = is.readAllBytes();
+        }
+        CompassParser parser = new CompassParser();
+        Cave cave = parser.parse("Test", ByteBuffer.wrap(bytes), Charset.forName("Cp1252"), createNetworking());
+        SurveyIndex index = parser.index(ByteBuffer.wrap(bytes), Charset.forName("Cp1252"));
+
+        assertEquals(cave.getSurveys().size(), index.getEntries().size());
+        assertEquals(0, index.getEntries().get(0).getOffset());
+        assertEquals(1, index.getEntries().get(0).getFirstLine());
+        for (int i = 0; i < cave.getSurveys().size(); i++) {
+            Survey survey = cave.getSurveys().get(i);
+            SurveyIndex.Entry entry = index.getEntries().get(i);
+            assertEquals(survey.getName(), entry.getSurvey().getName());
+            assertEquals(survey.getCavers(), entry.getSurvey().getCavers());
+            assertEquals(survey.getShots().size(), entry.getShotCount());
+            assertTrue(entry.getSurvey().getShots().isEmpty());
+            assertSame(entry, index.get(survey.getName()));
+            if (i > 0) {
+                SurveyIndex.Entry previous = index.getEntries().get(i - 1);
+                assertEquals(previous.getOffset() + previous.getLength(), entry.getOffset());
+            }
+        }
+        assertNull(index.get("no such survey"));
+    }
+
+    @Test
+    public void selectedSurveys() throws IOException, URISyntaxException {
+        Path path = Paths.get(CompassParserTest.class.getResource("/parser/dreieingangshoehle.dat").toURI());
+        CompassParser parser = new CompassParser();
+        Cave cave = parser.parse("Test", path, Charset.forName("Cp1252"), createNetworking());
+        List<Survey> expected = List.of(cave.getSurveys().get(1), cave.getSurveys().get(3));
+
+        Set<String> names = new HashSet<>();
+        for (Survey survey : expected) {
+            names.add(survey.getName());
+        }
+        Cave selected = parser.parse("Test", path, Charset.forName("Cp1252"), names, createNetworking());
+        assertSameSurveys(expected, selected.getSurveys());
+
+        try {
+            parser.parse("Test", path, Charset.forName("Cp1252"), Set.of("no such survey"), createNetworking());
+            fail("Needs to throw an exception");
+        } catch (SurveyException e) {
+            assertTrue(e.getMessage().contains("no such survey"));
+        }
+    }
+
+    @Test
+    public void invalidIndex() throws IOException, URISyntaxException {
+        Path path = Paths.get(CompassParserTest.class.getResource("/parser/invalid.dat").toURI());
+        try {
+            new CompassParser().parse("Test Hole", path, Charset.forName("Cp1252"), Set.of("10.1"), createNetworking());
+            fail("Needs to throw an exception");
+        } catch (SurveyException e) {
+            assertTrue(e.getMessage().contains("Error while reading line 6"));
+        }
+    }
+
+    private void assertSameSurveys(Cave expected, Cave actual) {
+        assertSameSurveys(expected.getSurveys(), actual.getSurveys());
+    }
+
+    private void assertSameSurveys(List<Survey> expected, List<Survey> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Survey s1 = expected.get(i);
+            Survey s2 = actual.get(i);
+            assertEquals(s1.getName(), s2.getName());
+            assertEquals(s1.getCaveName(), s2.getCaveName());
+            assertEquals(s1.getComment(), s2.getComment());
+            assertEquals(s1.getCavers(), s2.getCavers());
+            assertEquals(s1.getShots().size(), s2.getShots().size());
+            for (int j = 0; j < s1.getShots().size(); j++) {
+                Shot shot1 = s1.getShots().get(j);
+                Shot shot2 = s2.getShots().get(j);
+                assertEquals(shot1.getFrom(), shot2.getFrom());
+                assertEquals(shot1.getTo(), shot2.getTo());
+                assertEquals(shot1.getLength(), shot2.getLength());
+                assertEquals(shot1.getAzimut(), shot2.getAzimut());
+                assertEquals(shot1.getInclination(), shot2.getInclination());
+                assertEquals(shot1.getReverseAzimut(), shot2.getReverseAzimut());
+                assertEquals(shot1.getReverseInclination(), shot2.getReverseInclination());
+                assertEquals(shot1.getLeft(), shot2.getLeft());
+                assertEquals(shot1.getRight(), shot2.getRight());
+                assertEquals(shot1.getUp(), shot2.getUp());
+                assertEquals(shot1.getDown(), shot2.getDown());
+                assertEquals(shot1.getComment(), shot2.getComment());
+            }
+        }
+    }
+
     private Networking createNetworking() {
         Networking net = new Networking() {
             @Override
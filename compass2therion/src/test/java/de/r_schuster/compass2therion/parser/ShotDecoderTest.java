@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import de.r_schuster.compass2therion.data.AzimutUnits;
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Dimensions;
+import de.r_schuster.compass2therion.data.DimensionsAssociations;
+import de.r_schuster.compass2therion.data.InclinationUnits;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.ShotItems;
+import de.r_schuster.compass2therion.data.ShotLayout;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.exceptions.SurveyException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class ShotDecoderTest {
+
+    @Test
+    public void compile() {
+        ShotDecoder decoder = ShotDecoder.forFormat("RMDGUDLRALDdaBT");
+        ShotLayout layout = decoder.layout;
+        assertEquals(AzimutUnits.GRADS, layout.getAzimutUnit());
+        assertEquals(LengthUnits.METRES, layout.getLengthUnit());
+        assertEquals(LengthUnits.FEET_DECIMAL, layout.getDimensionUnit());
+        assertEquals(InclinationUnits.PERCENT, layout.getInclinationUnit());
+        assertEquals(List.of(Dimensions.UP, Dimensions.DOWN, Dimensions.LEFT, Dimensions.RIGHT), layout.getDimensions());
+        assertEquals(List.of(ShotItems.AZIMUT, ShotItems.LENGTH, ShotItems.INCLINATION, ShotItems.REVERSE_INCLINATION, ShotItems.REVERSE_AZIMUT), layout.getShotItems());
+        assertEquals(ShotItems.AZIMUT, layout.getShotItemsOrder().get(1));
+        assertEquals(Dimensions.RIGHT, layout.getDimensionsOrder().get(4));
+        assertEquals(DimensionsAssociations.TO, layout.getDimensionsAssociation());
+        assertTrue(layout.isReverse());
+
+        assertTrue(decoder.azimutInGrads);
+        assertTrue(decoder.lengthInMetres);
+        assertFalse(decoder.dimensionsInMetres);
+        assertTrue(decoder.inclinationInPercent);
+        assertFalse(decoder.inclinationInGrads);
+        assertEquals(11, decoder.flagsColumn);
+        assertEquals(9, ShotDecoder.forFormat("DDDDLRUDLAD").flagsColumn);
+    }
+
+    @Test
+    public void workarounds() {
+        ShotDecoder decoder = ShotDecoder.forFormat("QIIMLRUDLDAdaNF");
+        assertTrue(decoder.quads);
+        assertTrue(decoder.lengthInFeetAndInches);
+        assertTrue(decoder.dimensionsInFeetAndInches);
+        assertTrue(decoder.inclinationInDegreesAndMinutes);
+        assertEquals(AzimutUnits.DEGREES, decoder.layout.getAzimutUnit());
+        assertEquals(LengthUnits.FEET_DECIMAL, decoder.layout.getLengthUnit());
+        assertEquals(InclinationUnits.DEGREES, decoder.layout.getInclinationUnit());
+        assertFalse(decoder.layout.isReverse());
+    }
+
+    @Test
+    public void shared() throws IOException {
+        assertSame(ShotDecoder.forFormat("DMMDLRUDLDAdaBF"), ShotDecoder.forFormat("DMMDLRUDLDAdaBF"));
+
+        InputStream is = ShotDecoderTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
+        Cave cave = new CompassParser().parse("Test", is, Charset.forName("Cp1252"), c -> {
+        });
+        // the file uses two formats
+        Set<ShotLayout> layouts = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Survey survey : cave.getSurveys()) {
+            assertNotNull(survey.getLayout());
+            layouts.add(survey.getLayout());
+            assertEquals(survey.getLayout().getShotItemsOrder(), survey.getShotItemsOrder());
+        }
+        assertEquals(2, layouts.size());
+    }
+
+    @Test
+    public void changedLayout() {
+        ShotLayout layout = ShotDecoder.forFormat("DMMDLRUDLDAdaBF").layout;
+        Survey survey = new Survey();
+        survey.setLayout(layout);
+
+        // reading keeps the shared layout
+        assertEquals(layout.getDimensionsOrder(), survey.getDimensionsOrder());
+        assertEquals(layout.getShotItemsOrder().get(1), survey.getShotItemsOrder().get(1));
+        survey.getDimensionsOrder().forEach((index, dimension) -> assertNotNull(dimension));
+        survey.getShotItemsOrder().remove(99);
+        assertSame(layout, survey.getLayout());
+
+        survey.getDimensionsOrder().put(1, Dimensions.DOWN);
+        assertNull(survey.getLayout());
+        assertEquals(Dimensions.DOWN, survey.getDimensionsOrder().get(1));
+        assertEquals(Dimensions.LEFT, layout.getDimensionsOrder().get(1));
+        assertEquals(layout.getShotItemsOrder(), survey.getShotItemsOrder());
+
+        // changes through the entries
+        survey.setLayout(layout);
+        survey.getShotItemsOrder().entrySet().iterator().next().setValue(ShotItems.INCLINATION);
+        assertNull(survey.getLayout());
+        assertEquals(ShotItems.INCLINATION, survey.getShotItemsOrder().values().iterator().next());
+        survey.setLayout(layout);
+        survey.getDimensionsOrder().keySet().removeIf(index -> index == 4);
+        assertNull(survey.getLayout());
+        assertEquals(3, survey.getDimensionsOrder().size());
+        assertEquals(4, layout.getDimensionsOrder().size());
+
+        survey.setLayout(layout);
+        survey.setReverse(false);
+        assertNull(survey.getLayout());
+        assertEquals(layout.getDimensionsOrder(), survey.getDimensionsOrder());
+    }
+
+    @Test
+    public void invalid() {
+        for (String format : new String[]{"DMMDLRUDLD", "DMMDLRUDLDAdaB", "XMMDLRUDLDA", "DMMDLRUDLDAdaBX"}) {
+            assertThrows(SurveyException.class, () -> ShotDecoder.forFormat(format));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.parser;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class ShotTokenizerTest {
+
+    private final ShotTokenizer tokenizer = new ShotTokenizer();
+
+    @Test
+    public void sameAsSplit() {
+        String[] lines = {
+            "                   0                    1    22.38    98.00    11.00    -9.90     7.38     4.23    -9.90   276.00   -10.00  #|L#  HM-vhleneingang",
+            "  2.3\t2.4    31.33    35.00    56.00    20.08     6.92    18.57     0.33 ",
+            "a",
+            "",
+            "   ",
+            " x \u000B y\r\nz "
+        };
+        for (String line : lines) {
+            String[] split = line.trim().split("\\s+");
+            tokenizer.reset(line);
+            assertEquals(split.length, tokenizer.count());
+            for (int i = 0; i < split.length; i++) {
+                assertEquals(split[i], tokenizer.string(i));
+            }
+        }
+    }
+
+    @Test
+    public void columns() {
+        tokenizer.reset("  1  2  -999.00   5.50  #|L#  -9.90");
+        assertEquals(6, tokenizer.count());
+        assertEquals(-99900, tokenizer.hundredths(2));
+        assertEquals(550, tokenizer.hundredths(3));
+        assertTrue(tokenizer.startsWith(4, "#|"));
+        assertFalse(tokenizer.startsWith(3, "#|"));
+        assertTrue(tokenizer.contains(5, '-'));
+        assertFalse(tokenizer.contains(3, '-'));
+    }
+
+    @Test
+    public void hundredths() {
+        String[] numbers = {"0.00", "-0.00", "12.34", "-12.34", "+7.10", "5", "5.", ".5", "-.05", "1.005", "-1.005", "1.2345", "1E2", "99999999999999.99", "12345678901234567"};
+        for (String number : numbers) {
+            tokenizer.reset(number);
+            long expected = new BigDecimal(number).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            assertEquals(expected, tokenizer.hundredths(0));
+        }
+
+        for (String invalid : new String[]{"-", ".", "1.2.3", "abc", "M"}) {
+            tokenizer.reset(invalid);
+            try {
+                tokenizer.hundredths(0);
+                fail("Needs to throw an exception");
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class ChannelWriterTest {
+
+    private static final String TEXT = "equate 1@A 2@Bär\nété 🦇 Höhle 12.50 -3.25 €";
+
+    @Test
+    public void encodes() throws IOException {
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, Charset.forName("Cp1252"), StandardCharsets.UTF_16}) {
+            for (int capacity : new int[]{1, 7, 1 << 20}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (ChannelWriter writer = new ChannelWriter(Channels.newChannel(out), charset, capacity)) {
+                    for (int i = 0; i < 50; i++) {
+                        writer.write(TEXT);
+                        writer.write(' ');
+                        writer.write(TEXT.toCharArray(), 3, 10);
+                    }
+                }
+                StringBuilder expected = new StringBuilder();
+                for (int i = 0; i < 50; i++) {
+                    expected.append(TEXT).append(' ').append(TEXT, 3, 13);
+                }
+                assertArrayEquals(expected.toString().getBytes(charset), out.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void shiftStates() throws IOException {
+        Charset charset = Charset.forName("ISO-2022-JP");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ChannelWriter writer = new ChannelWriter(Channels.newChannel(out), charset, 7)) {
+            for (int i = 0; i < 20; i++) {
+                writer.write("equate 1@洞窟 2@B\n");
+                writer.write('穴');
+                writer.write(" 12.50");
+            }
+        }
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            expected.append("equate 1@洞窟 2@B\n穴 12.50");
+        }
+        assertEquals(expected.toString(), new String(out.toByteArray(), charset));
+        assertArrayEquals(expected.toString().getBytes(charset), out.toByteArray());
+    }
+
+    @Test
+    public void surrogates() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelWriter writer = new ChannelWriter(Channels.newChannel(out), StandardCharsets.UTF_8, 16);
+        // a pair split over two writes
+        writer.write("a\ud83e");
+        writer.write("\udd87b");
+        // a lone high surrogate is replaced
+        writer.write('\ud83e');
+        writer.write('c');
+        writer.write("\ud83e");
+        writer.flush();
+        assertArrayEquals("a🦇b?c".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        writer.close();
+        assertArrayEquals("a🦇b?c?".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        assertThrows(IOException.class, () -> writer.write("d"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 roger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.r_schuster.compass2therion.writer;
+
+import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.Survey;
+import de.r_schuster.compass2therion.networking.FlatNetworking;
+import de.r_schuster.compass2therion.parser.CompassParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author roger
+ */
+public class IncrementalWriterTest {
+
+    private static final FileTime OLD = FileTime.fromMillis(1_000_000_000_000L);
+
+    @Test
+    public void rewritesChanges() throws IOException {
+        Path dir = Files.createTempDirectory("incremental");
+        try {
+            Path master = dir.resolve("cave.th");
+            IncrementalWriter writer = new IncrementalWriter(master, dir.resolve("cave"));
+            writer.write(StandardCharsets.UTF_8, loadCave());
+            int surveys = loadCave().getSurveys().size();
+            assertEquals(surveys + 1, writer.getWritten().size());
+            assertTrue(writer.getUnchanged().isEmpty());
+            Path manifest = dir.resolve("cave.th" + IncrementalWriter.MANIFEST);
+            List<String> hashes = Files.readAllLines(manifest);
+            assertEquals(surveys + 1, hashes.size());
+            assertTrue(hashes.get(0).matches("[0-9a-f]{64}  cave/.*\\.th"));
+            assertTrue(hashes.get(surveys).endsWith("  cave.th"));
+            String text = new String(Files.readAllBytes(master), StandardCharsets.UTF_8);
+            assertTrue(text.contains("input cave/"));
+            assertTrue(text.contains("equate "));
+
+            // the same cave read again, nothing is touched
+            age(dir);
+            writer.write(StandardCharsets.UTF_8, loadCave());
+            assertTrue(writer.getWritten().isEmpty());
+            assertEquals(surveys + 1, writer.getUnchanged().size());
+            assertEquals(hashes, Files.readAllLines(manifest));
+            assertEquals(OLD, Files.getLastModifiedTime(master));
+
+            // a new survey is written, the master inputs it
+            Cave cave = loadCave();
+            Survey survey = new Survey();
+            survey.setName("New");
+            survey.setDimensionsAssociation(cave.getSurveys().get(0).getDimensionsAssociation());
+            survey.setLayout(cave.getSurveys().get(0).getLayout());
+            Shot shot = new Shot();
+            shot.setFrom("N1");
+            shot.setTo("N2");
+            shot.setLength(BigDecimal.TEN);
+            survey.addShot(shot);
+            cave.addSurvey(survey);
+            writer.write(StandardCharsets.UTF_8, cave);
+            assertEquals(2, writer.getWritten().size());
+            assertTrue(writer.getWritten().contains(master));
+            assertTrue(writer.getWritten().contains(dir.resolve("cave").resolve("New.th")));
+            assertEquals(OLD, Files.getLastModifiedTime(dir.resolve("cave").resolve(
+                    hashes.get(0).substring(hashes.get(0).indexOf("cave/") + 5))));
+
+            // the survey is gone again
+            writer.write(StandardCharsets.UTF_8, loadCave());
+            assertEquals(1, writer.getWritten().size());
+            assertEquals(1, writer.getDeleted().size());
+            assertFalse(Files.exists(dir.resolve("cave").resolve("New.th")));
+            assertEquals(hashes, Files.readAllLines(manifest));
+
+            // the manifest is trusted, only missing files are written again
+            Files.write(writer.getUnchanged().get(0), new byte[]{1});
+            writer.write(StandardCharsets.UTF_8, loadCave());
+            assertTrue(writer.getWritten().isEmpty());
+            Files.delete(master);
+            writer.write(StandardCharsets.UTF_8, loadCave());
+            assertEquals(1, writer.getWritten().size());
+            assertEquals(text, new String(Files.readAllBytes(master), StandardCharsets.UTF_8));
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void unboundShots() throws IOException {
+        Path dir = Files.createTempDirectory("incremental");
+        try {
+            Cave cave = loadCave();
+            for (int i = 0; i < 20; i++) {
+                Survey survey = new Survey();
+                survey.setName("L" + i);
+                survey.setDimensionsAssociation(cave.getSurveys().get(0).getDimensionsAssociation());
+                survey.setLayout(cave.getSurveys().get(0).getLayout());
+                cave.addSurvey(survey);
+                // a shot with a table of its own, not bound to the cave
+                Shot shot = new Shot();
+                shot.setFrom("F" + i);
+                shot.setTo("T" + i);
+                shot.setLength(BigDecimal.ONE);
+                survey.getShots().add(shot);
+            }
+            int stations = cave.getStations().size();
+
+            Path master = dir.resolve("cave.th");
+            IncrementalWriter writer = new IncrementalWriter(master, dir.resolve("cave"));
+            writer.write(StandardCharsets.UTF_8, cave);
+            assertEquals(stations + 40, cave.getStations().size());
+            String text = new String(Files.readAllBytes(dir.resolve("cave").resolve("L3.th")), StandardCharsets.UTF_8);
+            assertTrue(text.contains("F3 T3 "));
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void age(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.setLastModifiedTime(path, OLD);
+            }
+        }
+    }
+
+    private static Cave loadCave() throws IOException {
+        InputStream is = IncrementalWriterTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
+        return new CompassParser().parse("Dreieingangshöhle", is, Charset.forName("Cp1252"), new FlatNetworking());
+    }
+}
@@ -16,23 +16,43 @@
  */
 package de.r_schuster.compass2therion.writer;
 
+import de.r_schuster.compass2therion.data.AzimutUnits;
 import de.r_schuster.compass2therion.data.Cave;
+import de.r_schuster.compass2therion.data.Connection;
+import de.r_schuster.compass2therion.data.Dimensions;
+import de.r_schuster.compass2therion.data.DimensionsAssociations;
+import de.r_schuster.compass2therion.data.InclinationUnits;
+import de.r_schuster.compass2therion.data.LengthUnits;
+import de.r_schuster.compass2therion.data.Shot;
+import de.r_schuster.compass2therion.data.ShotItems;
+import de.r_schuster.compass2therion.data.Stations;
 import de.r_schuster.compass2therion.data.Survey;
 import de.r_schuster.compass2therion.data.SurveyDate;
 import de.r_schuster.compass2therion.networking.FlatNetworking;
+import de.r_schuster.compass2therion.networking.IncrementalNetworking;
 import de.r_schuster.compass2therion.networking.Networking;
 import de.r_schuster.compass2therion.parser.CompassParser;
 import de.r_schuster.compass2therion.parser.CompassParserTest;
 import de.r_schuster.compass2therion.parser.SurveyParser;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -70,6 +90,26 @@ public class TherionWriterTest {
         assertTrue(asList.contains("survey 2 -title \"Just a test\""));
     }
 
+    @Test
+    public void changedLayout() throws IOException {
+        Cave cave = loadCave("/parser/kleine_scheuer.dat", "Kleine Scheuer");
+        Survey survey = cave.getSurveys().get(0);
+        assertNotNull(survey.getLayout());
+        survey.getShotItemsOrder().put(1, ShotItems.INCLINATION);
+        survey.getShotItemsOrder().put(2, ShotItems.LENGTH);
+        assertNull(survey.getLayout());
+        Survey other = cave.getSurveys().get(1);
+        other.setInclinationUnit(InclinationUnits.DEGREES);
+        assertNull(other.getLayout());
+
+        StringWriter out = new StringWriter();
+        new TherionWriter(out).write(StandardCharsets.UTF_8, cave);
+        List<String> lines = Arrays.asList(out.toString().split(newline));
+        assertTrue(lines.contains("data normal from to clino length compass backclino backcompass "));
+        assertFalse(lines.contains("units clino percent"));
+        assertTrue(lines.contains("data normal from to compass length clino "));
+    }
+
     @Test
     public void complex() throws IOException {
         InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dreieingangshoehle.dat");
@@ -89,6 +129,133 @@ public class TherionWriterTest {
         assertEquals("encoding UTF-8", split[0]);
     }
 
+    @Test
+    public void channel() throws IOException {
+        StringWriter out = new StringWriter();
+        new TherionWriter(out).write(StandardCharsets.UTF_8, loadCave("/parser/dreieingangshoehle.dat", "Dreieingangshöhle"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TherionWriter wrt = new TherionWriter(new ChannelWriter(Channels.newChannel(bytes), StandardCharsets.UTF_8))) {
+            wrt.write(StandardCharsets.UTF_8, loadCave("/parser/dreieingangshoehle.dat", "Dreieingangshöhle"));
+        }
+        assertArrayEquals(out.toString().getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+
+    @Test
+    public void parallel() throws IOException {
+        Cave cave = loadCave("/parser/dreieingangshoehle.dat", "Dreieingangshöhle");
+        for (int i = 0; i < 100; i++) {
+            Survey survey = new Survey();
+            survey.setName("S" + i);
+            survey.setLengthUnit(LengthUnits.METRES);
+            survey.setAzimutUnit(AzimutUnits.DEGREES);
+            survey.setInclinationUnit(InclinationUnits.DEGREES);
+            survey.setDimensionsAssociation(DimensionsAssociations.TO);
+            survey.getShotItemsOrder().put(0, ShotItems.LENGTH);
+            survey.getDimensionsOrder().put(0, Dimensions.UP);
+            for (int j = 0; j < i; j++) {
+                Shot shot = new Shot();
+                shot.setFrom(i + "-" + j);
+                shot.setTo(j % 7 == 0 ? "A" + j : i + "-" + (j + 1));
+                shot.setLength(new BigDecimal(j).movePointLeft(1));
+                shot.setUp(BigDecimal.ONE);
+                survey.addShot(shot);
+            }
+            cave.addSurvey(survey);
+        }
+        // shots with a table of their own, not bound to the cave
+        for (int i = 0; i < 20; i++) {
+            Shot shot = new Shot();
+            shot.setFrom("F" + i);
+            shot.setTo("T" + i);
+            shot.setLength(BigDecimal.ONE);
+            shot.setUp(BigDecimal.ONE);
+            cave.getSurveys().get(cave.getSurveys().size() - 1 - i).getShots().add(shot);
+        }
+        int stations = cave.getStations().size();
+
+        StringWriter parallel = new StringWriter();
+        new TherionWriter(parallel, true).write(StandardCharsets.UTF_8, cave);
+        assertEquals(stations + 40, cave.getStations().size());
+        StringWriter sequential = new StringWriter();
+        new TherionWriter(sequential).write(StandardCharsets.UTF_8, cave);
+        assertEquals(sequential.toString(), parallel.toString());
+        assertTrue(parallel.toString().contains("F3 T3 1.00 " + newline));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TherionWriter wrt = new TherionWriter(new ChannelWriter(Channels.newChannel(bytes), StandardCharsets.UTF_8), true)) {
+            wrt.write(StandardCharsets.UTF_8, cave);
+        }
+        assertArrayEquals(sequential.toString().getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+
+    @Test
+    public void split() throws IOException {
+        Cave cave = loadCave("/parser/dreieingangshoehle.dat", "Dreieingangshöhle");
+        for (String name : new String[]{"a b", "A_b", ""}) {
+            Survey survey = new Survey();
+            survey.setName(name);
+            survey.setLengthUnit(LengthUnits.METRES);
+            survey.setAzimutUnit(AzimutUnits.DEGREES);
+            survey.setInclinationUnit(InclinationUnits.DEGREES);
+            survey.setDimensionsAssociation(DimensionsAssociations.FROM);
+            cave.addSurvey(survey);
+        }
+        StringWriter whole = new StringWriter();
+        new TherionWriter(whole).write(StandardCharsets.UTF_8, cave);
+
+        Path dir = Files.createTempDirectory("split");
+        try {
+            Path master = dir.resolve("cave.th");
+            List<Path> files;
+            try (TherionWriter wrt = new TherionWriter(ChannelWriter.open(master, StandardCharsets.UTF_8))) {
+                files = wrt.writeSplit(StandardCharsets.UTF_8, cave, false, dir.resolve("cave"));
+            }
+            assertEquals(cave.getSurveys().size(), files.size());
+            assertEquals("a_b.th", files.get(files.size() - 3).getFileName().toString());
+            assertEquals("A_b_2.th", files.get(files.size() - 2).getFileName().toString());
+            assertEquals("survey.th", files.get(files.size() - 1).getFileName().toString());
+
+            String text = new String(Files.readAllBytes(master), StandardCharsets.UTF_8);
+            int inputs = text.indexOf("input ");
+            StringBuilder joined = new StringBuilder(text.substring(0, inputs));
+            String encoding = "encoding UTF-8" + newline + newline;
+            for (Path file : files) {
+                assertTrue(text.contains("input cave/" + file.getFileName() + newline));
+                String survey = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                assertTrue(survey.startsWith(encoding));
+                joined.append(survey.substring(encoding.length()));
+            }
+            joined.append(newline).append(newline);
+            assertEquals(whole.toString(), joined.toString());
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void splitCollision() throws IOException {
+        Cave cave = loadCave("/parser/dreieingangshoehle.dat", "Dreieingangshöhle");
+        Path dir = Files.createTempDirectory("split");
+        try {
+            Path surveys = Files.createDirectory(dir.resolve("cave"));
+            Path existing = Files.write(surveys.resolve("8.th"), new byte[]{1});
+            StringWriter master = new StringWriter();
+            TherionWriter wrt = new TherionWriter(master);
+            assertThrows(FileAlreadyExistsException.class, () -> wrt.writeSplit(StandardCharsets.UTF_8, cave, false, surveys));
+            assertEquals("", master.toString());
+            try (Stream<Path> files = Files.list(surveys)) {
+                assertEquals(Arrays.asList(existing), files.collect(Collectors.toList()));
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
     @Test
     public void dates() throws IOException {
         InputStream is = CompassParserTest.class.getResourceAsStream("/parser/dates.dat");
@@ -228,6 +395,11 @@ public class TherionWriterTest {
         assertTrue(toString.contains("equate 0@1 0@3")); // a+ renamed to 3
         assertTrue(toString.contains("equate 5@1 5@4")); // b' renamed to 4
         assertTrue(toString.contains("equate 10@2 10@4")); // b' renamed to 4
+        // the set of connections still finds them after the renaming
+        assertTrue(cave.getConnections().contains(new Connection("10", "2", "10", "4")));
+        for (Connection conn : new ArrayList<>(cave.getConnections())) {
+            assertTrue(cave.getConnections().remove(conn));
+        }
 
     }
 
@@ -239,6 +411,9 @@ public class TherionWriterTest {
         wrt.write(StandardCharsets.UTF_8, cave, true);
         String toString = out.toString();
         assertTrue(toString.contains("equate 2@1 2@2"));
+        for (Connection conn : new ArrayList<>(cave.getConnections())) {
+            assertTrue(cave.getConnections().contains(conn));
+        }
         assertTrue(toString.contains("0 2 1.00 1.00 1.00"));
         assertTrue(toString.contains("2 4 2.00 -1.00 90.00"));
         assertTrue(toString.contains("4 1 5.00 5.00 80.00"));
@@ -246,6 +421,44 @@ public class TherionWriterTest {
         assertTrue(toString.contains("3 5 15.00 -5.00 20.00"));
     }
 
+    @Test
+    public void renameStationsAfterRemoval() throws IOException {
+        Cave cave = new Cave("Testcave");
+        cave.addSurvey(shots("A", "1", "2"));
+        cave.addSurvey(shots("B", "1", "x.y"));
+        IncrementalNetworking nw = new IncrementalNetworking();
+        nw.networking(cave);
+        // station 2 is still in the table of the cave
+        nw.removeSurvey("A");
+        assertNotEquals(Stations.NONE, cave.getStations().find("2"));
+
+        StringWriter out = new StringWriter();
+        new TherionWriter(out).write(StandardCharsets.UTF_8, cave, true);
+        assertTrue(out.toString().contains("1 2 1.00 0.00 0.00 " + newline));
+    }
+
+    private static Survey shots(String name, String... stations) {
+        Survey survey = new Survey();
+        survey.setName(name);
+        survey.setLengthUnit(LengthUnits.METRES);
+        survey.setAzimutUnit(AzimutUnits.DEGREES);
+        survey.setInclinationUnit(InclinationUnits.DEGREES);
+        survey.setDimensionsAssociation(DimensionsAssociations.FROM);
+        survey.getShotItemsOrder().put(0, ShotItems.LENGTH);
+        survey.getShotItemsOrder().put(1, ShotItems.AZIMUT);
+        survey.getShotItemsOrder().put(2, ShotItems.INCLINATION);
+        for (int i = 0; i < stations.length; i += 2) {
+            Shot shot = new Shot();
+            shot.setFrom(stations[i]);
+            shot.setTo(stations[i + 1]);
+            shot.setLength(new BigDecimal("1.00"));
+            shot.setAzimut(new BigDecimal("0.00"));
+            shot.setInclination(new BigDecimal("0.00"));
+            survey.addShot(shot);
+        }
+        return survey;
+    }
+
     @Test
     public void renamingTeam() throws IOException {
         StringWriter out = new StringWriter();
@@ -266,6 +479,41 @@ public class TherionWriterTest {
         assertTrue(toString.contains("team \"Alexander Graf_von_Hinterdupfing_zu_Vorderdupfing\""));
     }
 
+    @Test
+    public void numbers() throws IOException {
+        Survey survey = new Survey();
+        survey.setName("N");
+        survey.setLengthUnit(LengthUnits.METRES);
+        survey.setAzimutUnit(AzimutUnits.DEGREES);
+        survey.setInclinationUnit(InclinationUnits.DEGREES);
+        survey.setDimensionsAssociation(DimensionsAssociations.FROM);
+        survey.getShotItemsOrder().put(0, ShotItems.LENGTH);
+        survey.getShotItemsOrder().put(1, ShotItems.AZIMUT);
+        survey.getShotItemsOrder().put(2, ShotItems.INCLINATION);
+        survey.getDimensionsOrder().put(0, Dimensions.LEFT);
+        survey.getDimensionsOrder().put(1, Dimensions.RIGHT);
+        survey.getDimensionsOrder().put(2, Dimensions.UP);
+        survey.getDimensionsOrder().put(3, Dimensions.DOWN);
+        Shot shot = new Shot();
+        shot.setFrom("1");
+        shot.setTo("2");
+        shot.setLength(new BigDecimal("1.235"));
+        shot.setAzimut(new BigDecimal("7"));
+        shot.setInclination(new BigDecimal("-0.05"));
+        shot.setLeft(BigDecimal.ZERO);
+        shot.setUp(new BigDecimal("123456789012.34"));
+        shot.setDown(new BigDecimal("0.10000"));
+        survey.addShot(shot);
+        Cave cave = new Cave("Numbers");
+        cave.addSurvey(survey);
+
+        StringWriter out = new StringWriter();
+        new TherionWriter(out).write(StandardCharsets.UTF_8, cave);
+        List<String> lines = Arrays.asList(out.toString().split(newline));
+        assertTrue(lines.contains("1 2 1.24 7.00 -0.05 "));
+        assertTrue(lines.contains("1 0.00  123456789012.34 0.10 "));
+    }
+
     private Cave loadCave(String path, String name) throws IOException {
         InputStream is = TherionWriterTest.class.getResourceAsStream(path);
         SurveyParser parser = new CompassParser();